@@ -1,13 +1,19 @@
 package nu.nerd.beastmaster;
 
-import java.util.ArrayList;
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.WeakHashMap;
 import java.util.stream.Collectors;
 
 import org.bukkit.Bukkit;
 import org.bukkit.Chunk;
 import org.bukkit.GameMode;
 import org.bukkit.Location;
+import org.bukkit.Material;
 import org.bukkit.World;
 import org.bukkit.World.Environment;
 import org.bukkit.block.Biome;
@@ -20,16 +26,19 @@ import org.bukkit.entity.Mob;
 import org.bukkit.entity.Player;
 import org.bukkit.entity.Projectile;
 import org.bukkit.entity.Slime;
+import org.bukkit.entity.TNTPrimed;
 import org.bukkit.event.EventHandler;
 import org.bukkit.event.EventPriority;
 import org.bukkit.event.Listener;
 import org.bukkit.event.block.BlockBreakEvent;
+import org.bukkit.event.block.BlockExplodeEvent;
 import org.bukkit.event.entity.CreatureSpawnEvent;
 import org.bukkit.event.entity.CreatureSpawnEvent.SpawnReason;
 import org.bukkit.event.entity.EntityDamageByEntityEvent;
 import org.bukkit.event.entity.EntityDamageEvent;
 import org.bukkit.event.entity.EntityDamageEvent.DamageCause;
 import org.bukkit.event.entity.EntityDeathEvent;
+import org.bukkit.event.entity.EntityExplodeEvent;
 import org.bukkit.event.entity.EntityTargetLivingEntityEvent;
 import org.bukkit.event.entity.EntityTeleportEvent;
 import org.bukkit.event.entity.ProjectileHitEvent;
@@ -39,10 +48,13 @@ import org.bukkit.event.player.PlayerJoinEvent;
 import org.bukkit.event.player.PlayerRespawnEvent;
 import org.bukkit.event.world.ChunkLoadEvent;
 import org.bukkit.event.world.ChunkUnloadEvent;
+import org.bukkit.event.world.EntitiesLoadEvent;
+import org.bukkit.event.world.EntitiesUnloadEvent;
 import org.bukkit.event.world.WorldLoadEvent;
 import org.bukkit.inventory.EntityEquipment;
 import org.bukkit.plugin.java.JavaPlugin;
 import org.bukkit.projectiles.ProjectileSource;
+import org.bukkit.util.Vector;
 
 import net.sothatsit.blockstore.BlockStoreApi;
 import nu.nerd.beastmaster.commands.BeastItemExecutor;
@@ -61,7 +73,6 @@ import nu.nerd.beastmaster.objectives.ObjectiveManager;
 import nu.nerd.beastmaster.objectives.ObjectiveTypeManager;
 import nu.nerd.beastmaster.zones.Zone;
 import nu.nerd.beastmaster.zones.ZoneManager;
-import nu.nerd.entitymeta.EntityMeta;
 
 // ----------------------------------------------------------------------------
 /**
@@ -79,6 +90,14 @@ public class BeastMaster extends JavaPlugin implements Listener {
      */
     public static BeastMaster PLUGIN;
 
+    /**
+     * Resolves references between configured objects as a singleton.
+     *
+     * This must be initialised before the other managers, which notify it of
+     * changes as they are constructed.
+     */
+    public static final LinkManager LINKS = new LinkManager();
+
     /**
      * Zone manager as a singleton.
      */
@@ -119,6 +138,36 @@ public class BeastMaster extends JavaPlugin implements Listener {
      */
     public static final DisguiseManager DISGUISES = new DisguiseManager();
 
+    /**
+     * Queues item drops to be spawned on the next tick.
+     */
+    public static final DropQueue DROP_QUEUE = new DropQueue();
+
+    /**
+     * Spreads large numbers of mob spawns over several ticks.
+     */
+    public static final SpawnScheduler SPAWNS = new SpawnScheduler(() -> CONFIG.MOB_SPAWNS_PER_TICK);
+
+    /**
+     * Limits the number of support mob summons per tick.
+     */
+    public static final SpawnScheduler SUMMONS = new SpawnScheduler(() -> CONFIG.SUPPORT_SUMMONS_PER_TICK);
+
+    /**
+     * Runs delayed sound effects and mob teleports.
+     */
+    public static final EffectQueue EFFECTS = new EffectQueue();
+
+    /**
+     * Tracks which player most recently damaged each mob.
+     */
+    public static final DamageTracker DAMAGE = new DamageTracker();
+
+    /**
+     * Stores per-entity state in PersistentDataContainers.
+     */
+    public static final EntityData ENTITY_DATA = new EntityData();
+
     // ------------------------------------------------------------------------
     /**
      * Log a debug message.
@@ -137,6 +186,7 @@ public class BeastMaster extends JavaPlugin implements Listener {
     public void onEnable() {
         PLUGIN = this;
         saveDefaultConfig();
+        ENTITY_DATA.load(new File(getDataFolder(), "entity-data.yml"), getLogger());
         CONFIG.reload(false);
 
         addCommandExecutor(new BeastMasterExecutor());
@@ -149,7 +199,8 @@ public class BeastMaster extends JavaPlugin implements Listener {
 
         getServer().getPluginManager().registerEvents(this, this);
 
-        // Every tick, do particle effects for objectives.
+        // Every tick, expire objectives, detect players finding them and do
+        // particle effects.
         Bukkit.getScheduler().scheduleSyncRepeatingTask(this, new Runnable() {
             @Override
             public void run() {
@@ -158,13 +209,15 @@ public class BeastMaster extends JavaPlugin implements Listener {
         }, 1, 1);
 
         OBJECTIVES.extractSchematics();
+        OBJECTIVES.load();
 
         // Since we can't rely on ChunkLoadEvent or WorldLoadEvent to tell us
-        // when chunks containing disguised mobs load at startup, let's
-        // process all loaded chunks here.
+        // when chunks containing disguised mobs or objectives load at startup,
+        // let's process all loaded chunks here.
         for (World world : Bukkit.getWorlds()) {
             for (Chunk chunk : world.getLoadedChunks()) {
-                DISGUISES.loadDisguises(chunk);
+                DISGUISES.queueDisguises(Arrays.asList(chunk.getEntities()));
+                OBJECTIVES.restoreObjectives(chunk);
             }
         }
     } // onEnable
@@ -176,7 +229,12 @@ public class BeastMaster extends JavaPlugin implements Listener {
     @Override
     public void onDisable() {
         Bukkit.getScheduler().cancelTasks(this);
-        OBJECTIVES.removeAll();
+        DROP_QUEUE.flush();
+        SPAWNS.clear();
+        SUMMONS.clear();
+        EFFECTS.clear();
+        DAMAGE.flushAll();
+        OBJECTIVES.save();
     }
 
     // ------------------------------------------------------------------------
@@ -190,8 +248,7 @@ public class BeastMaster extends JavaPlugin implements Listener {
      */
     public static MobType getMobType(Entity entity) {
         if (entity instanceof LivingEntity) {
-            String mobTypeId = (String) EntityMeta.api().get(entity, BeastMaster.PLUGIN, "mob-type");
-            return MOBS.getMobType(mobTypeId);
+            return MOBS.getMobType(ENTITY_DATA.getMobTypeId(entity));
         }
         return null;
     }
@@ -245,24 +302,28 @@ public class BeastMaster extends JavaPlugin implements Listener {
      * ID or MobType ID.
      *
      * @param loc         the location to spawn the mob(s).
-     * @param lootOrMobId the DropSet or MobType ID.
+     * @param lootOrMob   the DropSet or MobType that the property value is
+     *                    linked to.
      * @param checkCanFit whether to check if the mobs can fit.
-     * @param results     DropResults recording whether vanilla drops happened.
-     * @param trigger     the trigger string to log for logged {@link Drop}s.
-     * @return a list of the spawned mobs.
+     * @param results     DropResults recording whether vanilla drops happened,
+     *                    and the spawned mobs.
+     * @param trigger     the trigger to log for logged {@link Drop}s.
+     * @return a list of the mobs spawned immediately; see
+     *         {@link DropResults#setMobHandler(java.util.function.Consumer)}
+     *         for those spawned over subsequent ticks.
      */
-    public List<LivingEntity> spawnMultipleMobs(Location loc, String lootOrMobId, boolean checkCanFit, DropResults results, String trigger) {
-        DropSet drops = BeastMaster.LOOTS.getDropSet(lootOrMobId);
-        if (drops != null) {
-            drops.generateRandomDrops(results, trigger, null, loc, true);
+    public List<LivingEntity> spawnMultipleMobs(Location loc, Object lootOrMob, boolean checkCanFit, DropResults results, DropTrigger trigger) {
+        if (lootOrMob instanceof DropSet) {
+            ((DropSet) lootOrMob).generateRandomDrops(results, trigger, null, loc, true);
             return results.getMobs();
         } else {
-            List<LivingEntity> mobs = new ArrayList<>();
-            MobType supportMobType = BeastMaster.MOBS.getMobType(lootOrMobId);
-            if (supportMobType != null) {
-                mobs.add(spawnMob(loc, supportMobType, checkCanFit));
+            if (lootOrMob instanceof MobType && results.reserveMobs(1) == 1) {
+                LivingEntity mob = spawnMob(loc, (MobType) lootOrMob, checkCanFit);
+                if (mob != null) {
+                    results.addMob(mob);
+                }
             }
-            return mobs;
+            return results.getMobs();
         }
     }
 
@@ -281,7 +342,8 @@ public class BeastMaster extends JavaPlugin implements Listener {
 
         // ChunkLoadEvent is not raised for pre-loaded spawn chunks.
         for (Chunk chunk : world.getLoadedChunks()) {
-            Bukkit.getScheduler().runTaskLater(this, () -> DISGUISES.loadDisguises(chunk), 1);
+            DISGUISES.queueDisguises(Arrays.asList(chunk.getEntities()));
+            OBJECTIVES.restoreObjectives(chunk);
         }
     }
 
@@ -293,11 +355,18 @@ public class BeastMaster extends JavaPlugin implements Listener {
      * Handle players breaking ore blocks by consulting the most specific loot
      * table for the applicable Zone/Condition and block type.
      *
-     * Don't drop special items for player-placed blocks.
+     * Don't drop special items for player-placed blocks. BlockStore is only
+     * queried for objectives and blocks whose type has mining drops in some
+     * zone of the world.
      */
     @EventHandler(ignoreCancelled = true, priority = EventPriority.HIGHEST)
     protected void onBlockBreak(BlockBreakEvent event) {
         Block block = event.getBlock();
+        Objective objective = OBJECTIVES.getObjective(block);
+        if (objective == null && !ZONES.getMiningMaterials(block.getWorld()).contains(block.getType())) {
+            return;
+        }
+
         long start = System.nanoTime();
         boolean placed = BlockStoreApi.isPlaced(block);
         if (CONFIG.DEBUG_BLOCKSTORE) {
@@ -313,7 +382,6 @@ public class BeastMaster extends JavaPlugin implements Listener {
 
         handleBlockBreakCustomDrops(event, block);
 
-        Objective objective = OBJECTIVES.getObjective(block);
         if (objective != null) {
             // Prevent the objective break from being logged by LogBlock.
             event.setCancelled(true);
@@ -323,6 +391,44 @@ public class BeastMaster extends JavaPlugin implements Listener {
         }
     }
 
+    // ------------------------------------------------------------------------
+    /**
+     * When an entity, such as a creeper or primed TNT, explodes, generate the
+     * mining drops of the destroyed blocks.
+     *
+     * TNT ignited by a player who is not in survival mode drops nothing
+     * special.
+     */
+    @EventHandler(ignoreCancelled = true, priority = EventPriority.HIGHEST)
+    protected void onEntityExplode(EntityExplodeEvent event) {
+        if (!CONFIG.EXPLOSION_MINING_DROPS) {
+            return;
+        }
+
+        Entity entity = event.getEntity();
+        Player player = null;
+        if (entity instanceof TNTPrimed && ((TNTPrimed) entity).getSource() instanceof Player) {
+            player = (Player) ((TNTPrimed) entity).getSource();
+            if (player.getGameMode() != GameMode.SURVIVAL) {
+                return;
+            }
+        }
+
+        handleExplosionCustomDrops(event.blockList(), (player != null) ? player : entity.getType(), player);
+    }
+
+    // ------------------------------------------------------------------------
+    /**
+     * When a block, such as a bed in the nether, explodes, generate the mining
+     * drops of the destroyed blocks.
+     */
+    @EventHandler(ignoreCancelled = true, priority = EventPriority.HIGHEST)
+    protected void onBlockExplode(BlockExplodeEvent event) {
+        if (CONFIG.EXPLOSION_MINING_DROPS) {
+            handleExplosionCustomDrops(event.blockList(), null, null);
+        }
+    }
+
     // ------------------------------------------------------------------------
     /**
      * When a mob spawns, perform zone-appropriate replacement with custom mob
@@ -346,7 +452,7 @@ public class BeastMaster extends JavaPlugin implements Listener {
         LivingEntity entity = event.getEntity();
 
         // Tag spawn reason. Replacement mobs will have SpawnReason.CUSTOM.
-        EntityMeta.api().set(entity, this, "spawn-reason", event.getSpawnReason().toString());
+        ENTITY_DATA.setSpawnReason(entity, event.getSpawnReason());
 
         switch (event.getSpawnReason()) {
         case CUSTOM:
@@ -386,8 +492,9 @@ public class BeastMaster extends JavaPlugin implements Listener {
                     case ITEM:
                         entity.remove();
                         DropResults results = new DropResults();
-                        drop.generate(results, "Mob replacement of " + entity.getType() + " in " + zone.getId(),
+                        drop.generate(results, new DropTrigger(zone.getId(), "replaced", entity.getType()),
                                       null, entity.getLocation());
+                        results.dropExperience(entity.getLocation());
                         break;
                     }
                 } else {
@@ -452,6 +559,9 @@ public class BeastMaster extends JavaPlugin implements Listener {
      * When a mob launches projectiles, replace them according to
      * "projectile-mobs" first. Those that aren't turned into mobs are then
      * disguised according to "projectile-disguise".
+     *
+     * Projectiles launched by the same mob in the same tick are handled as one
+     * {@link ProjectileVolley}.
      */
     @EventHandler(ignoreCancelled = true, priority = EventPriority.LOWEST)
     protected void onProjectileLaunch(ProjectileLaunchEvent event) {
@@ -464,38 +574,50 @@ public class BeastMaster extends JavaPlugin implements Listener {
         // Get the shooter's target.
         // EnderDragon doesn't have getTarget() because it doesn't
         // inherit from Mob (nor from Flying). :/
-        LivingEntity target = null;
-        if (shooter instanceof Mob) {
-            target = ((Mob) shooter).getTarget();
-        }
+        LivingEntity target = (shooter instanceof Mob) ? ((Mob) shooter).getTarget() : null;
 
         // Turn projectiles into mobs, if configured.
         LivingEntity shootingMob = (LivingEntity) shooter;
         MobType shootingMobType = getMobType(shootingMob);
-        if (shootingMobType == null) {
+        if (shootingMobType == null || !shootingMobType.hasBehaviour(MobType.ON_PROJECTILE_LAUNCH)) {
             return;
         }
-        MobProperty projectileMobsProperty = shootingMobType.getDerivedProperty("projectile-mobs");
+
+        // Group projectiles launched by this mob in this tick.
+        int tick = Bukkit.getCurrentTick();
+        ProjectileVolley volley = _volleys.get(shootingMob);
+        if (volley == null || !volley.matches(shootingMobType, tick)) {
+            volley = new ProjectileVolley(shootingMobType, tick);
+            _volleys.put(shootingMob, volley);
+        }
 
         // Need to record if projectile removed. isValid() is not true until
         // this event returns.
         Location projectileLocation = projectile.getLocation();
         boolean projectileRemoved = false;
-        if (projectileMobsProperty.getValue() != null) {
-            // DropSet or MobType ID:
-            String id = (String) projectileMobsProperty.getValue();
+        Object lootOrMob = volley.getLootOrMob();
+        if (lootOrMob != null && !volley.canSpawnMobs()) {
+            // Treat projectiles over the cap like the last one to spawn mobs.
+            if (volley.isProjectileRemoved()) {
+                event.setCancelled(true);
+                projectileRemoved = true;
+            }
+        } else if (lootOrMob != null) {
             DropResults results = new DropResults();
-            List<LivingEntity> projectileMobs = spawnMultipleMobs(projectileLocation, id, false, results,
-                                                                  shootingMobType.getId() + " projectile-mobs");
-            for (LivingEntity mob : projectileMobs) {
+            results.setMobLimit(volley.getRemainingMobs());
+            Vector velocity = projectile.getVelocity();
+            results.setMobHandler(mob -> {
                 // Launch the mob with the projectile's velocity.
-                mob.setVelocity(projectile.getVelocity());
+                mob.setVelocity(velocity);
 
                 // Target the mob at the shooter's target.
                 if (target != null && mob instanceof Mob) {
                     ((Mob) mob).setTarget(target);
                 }
-            }
+            });
+            spawnMultipleMobs(projectileLocation, lootOrMob, false, results,
+                              new DropTrigger(shootingMobType.getId(), "shot", "projectile-mobs"));
+            volley.setRemainingMobs(results.getMobLimit());
 
             // To have the vanilla drop means not removing the projectile.
             // Really requires drop spread to avoid hitting spawned mobs.
@@ -503,17 +625,13 @@ public class BeastMaster extends JavaPlugin implements Listener {
                 event.setCancelled(true);
                 projectileRemoved = true;
             }
+            volley.setProjectileRemoved(projectileRemoved);
         }
 
         // If the projectile was removed, we can't disguise it etc.
         if (!projectileRemoved) {
-            String projectileDisguise = (String) shootingMobType.getDerivedProperty("projectile-disguise").getValue();
-            BeastMaster.DISGUISES.createDisguise(projectile, projectile.getWorld(), projectileDisguise);
-
-            SoundEffect sound = (SoundEffect) shootingMobType.getDerivedProperty("projectile-launch-sound").getValue();
-            if (sound != null) {
-                sound.play(projectileLocation);
-            }
+            volley.disguise(projectile);
+            volley.playLaunchSound(projectileLocation);
         }
     } // onProjectileLaunch
 
@@ -532,11 +650,8 @@ public class BeastMaster extends JavaPlugin implements Listener {
 
         LivingEntity shootingMob = (LivingEntity) shooter;
         MobType shootingMobType = getMobType(shootingMob);
-        if (shootingMobType != null) {
-            Boolean removed = (Boolean) shootingMobType.getDerivedProperty("projectile-removed").getValue();
-            if (removed != null && removed) {
-                projectile.remove();
-            }
+        if (shootingMobType != null && shootingMobType.hasBehaviour(MobType.HAS_PROJECTILE_REMOVED)) {
+            projectile.remove();
         }
     }
 
@@ -572,15 +687,20 @@ public class BeastMaster extends JavaPlugin implements Listener {
         }
 
         MobType mobType = getMobType(entity);
-        if (mobType != null) {
+        if (mobType != null && mobType.hasBehaviour(MobType.ON_DAMAGE)) {
             Location mobLocation = entity.getLocation();
 
             // Support mobs.
-            String supportId = (String) mobType.getDerivedProperty("support-mobs").getValue();
-            if (supportId != null) {
+            Object supportLootOrMob = mobType.hasBehaviour(MobType.HAS_SUPPORT)
+                ? mobType.getDerivedProperty("support-mobs").getLinkedValue()
+                : null;
+            Integer lastSummonTick = _supportSummonTicks.get(damagedLiving);
+            boolean coolingDown = (lastSummonTick != null &&
+                                   Bukkit.getCurrentTick() - lastSummonTick < CONFIG.SUPPORT_COOLDOWN_TICKS);
+            if (supportLootOrMob != null && !coolingDown) {
                 Double healthThreshold = (Double) mobType.getDerivedProperty("support-health").getValue();
                 boolean healthLow = (healthThreshold == null || finalHealth <= healthThreshold);
-                Double prevHealth = (Double) EntityMeta.api().get(entity, this, "support-health");
+                Double prevHealth = ENTITY_DATA.getSupportHealth(entity);
                 Double healthStep = (Double) mobType.getDerivedProperty("support-health-step").getValue();
                 Double supportPercent = (Double) mobType.getDerivedProperty("support-percent").getValue();
 
@@ -616,64 +736,43 @@ public class BeastMaster extends JavaPlugin implements Listener {
                     && (prevHealth - finalHealth >= healthStep)
                     && Math.random() * 100 <= supportPercent) {
 
-                    // TODO: spawning needs to do better at looking for a
-                    // spawnable location. Really need to do spawn conditions
-                    // argument to spawning functions.
-                    Location supportLocation = mobLocation.clone().add(0, 1, 0);
-
-                    // Summon support mobs targeting same target as summoner.
-                    DropResults results = new DropResults();
-                    List<LivingEntity> supportMobs = spawnMultipleMobs(supportLocation, supportId, false, results,
-                                                                       mobType.getId() + " support-mobs");
-                    if (CONFIG.DEBUG_SUPPORT_MOBS) {
-                        getLogger().info("    Spawned number of mobs = " + supportMobs.size());
-                    }
-
-                    if (damagedLiving instanceof Mob) {
-                        for (LivingEntity mob : supportMobs) {
-                            if (mob instanceof Mob) {
-                                ((Mob) mob).setTarget(((Mob) damagedLiving).getTarget());
-                            }
-                        }
-                    }
-                    // TODO: Spread them out?
-
-                    // Record the mob health when support mobs were last
-                    // spawned.
-                    EntityMeta.api().set(entity, this, "support-health", finalHealth);
+                    // Record the mob health and time when support mobs were
+                    // last summoned. The summon itself may be deferred.
+                    ENTITY_DATA.setSupportHealth(entity, finalHealth);
+                    _supportSummonTicks.put(damagedLiving, Bukkit.getCurrentTick());
+                    SUMMONS.schedule(() -> summonSupportMobs(damagedLiving, mobType, supportLootOrMob));
                 }
             }
 
             DamageCause cause = event.getCause();
-            if (cause == DamageCause.PROJECTILE) {
+            if (cause == DamageCause.PROJECTILE && mobType.hasBehaviour(MobType.HAS_PROJECTILE_IMMUNITY)) {
                 Double immunityPercent = (Double) mobType.getDerivedProperty("projectile-immunity-percent").getValue();
                 boolean immuneToProjectile = (immunityPercent != null && Math.random() * 100 < immunityPercent);
                 if (immuneToProjectile) {
                     event.setCancelled(true);
                     SoundEffect immunitySound = (SoundEffect) mobType.getDerivedProperty("projectile-immunity-sound").getValue();
-                    if (immunitySound != null) {
-                        Bukkit.getScheduler().runTaskLater(this, () -> immunitySound.play(mobLocation), 1);
-                    }
+                    EFFECTS.playSound(immunitySound, mobLocation, 1);
                     return;
                 }
             }
 
             // Play hurt sounds after projectile immunity checks.
-            String propertyName = (cause == DamageCause.PROJECTILE) ? "projectile-hurt-sound" : "melee-hurt-sound";
-            SoundEffect hurtSound = (SoundEffect) mobType.getDerivedProperty(propertyName).getValue();
-            if (hurtSound != null) {
-                Bukkit.getScheduler().runTaskLater(this, () -> hurtSound.play(mobLocation), 1);
+            if (mobType.hasBehaviour(MobType.HAS_HURT_SOUNDS)) {
+                String propertyName = (cause == DamageCause.PROJECTILE) ? "projectile-hurt-sound" : "melee-hurt-sound";
+                SoundEffect hurtSound = (SoundEffect) mobType.getDerivedProperty(propertyName).getValue();
+                EFFECTS.playSound(hurtSound, mobLocation, 1);
             }
 
             // Impart hurt-potions effects on the mob when hurt.
-            String potionSetId = (String) mobType.getDerivedProperty("hurt-potions").getValue();
-            PotionSet potionSet = POTIONS.getPotionSet(potionSetId);
-            if (potionSet != null) {
-                potionSet.apply(damagedLiving);
+            if (mobType.hasBehaviour(MobType.HAS_HURT_POTIONS)) {
+                PotionSet potionSet = (PotionSet) mobType.getDerivedProperty("hurt-potions").getLinkedValue();
+                if (potionSet != null) {
+                    potionSet.apply(damagedLiving);
+                }
             }
 
             // Don't teleport if the damage is low to allow for slight falls.
-            if (event.getFinalDamage() <= 3.0) {
+            if (event.getFinalDamage() <= 3.0 || !mobType.hasBehaviour(MobType.HAS_HURT_TELEPORT)) {
                 return;
             }
 
@@ -691,45 +790,75 @@ public class BeastMaster extends JavaPlugin implements Listener {
                 diff.subtract(oldLoc);
                 newLoc.setDirection(diff.getDirection());
 
-                // Find an initial safe destination. Might be floating.
-                newLoc.add(0, 10, 0);
-                boolean safe = false;
-                for (int i = 0; i < 10; ++i) {
-                    if (Util.isPassable3x3x3(newLoc)) {
-                        safe = true;
-                        break;
-                    }
-                    newLoc.add(0, -1, 0);
-                }
-
-                if (!safe) {
+                // Find a safe destination up to 10 blocks up, then lower it
+                // up to 10 blocks to the ground.
+                int topY = oldLoc.getBlockY() + 10;
+                _passability.load(newLoc.getWorld(), newLoc.getBlockX(), newLoc.getBlockZ(), topY - 19, 22);
+                int safeY = _passability.findSafeY(topY, 10, 10);
+                if (safeY == PassabilityGrid.NO_Y) {
                     // Nowhere safe. Try again next damage.
                     return;
                 }
+                newLoc.add(0, safeY - oldLoc.getBlockY(), 0);
 
-                // newLoc is a valid teleport destination, but maybe floating.
-                // Try to lower the location to the ground.
-                for (int i = 0; i < 10; ++i) {
-                    Location tryLoc = newLoc.clone().add(0, -1, 0);
-                    if (Util.isPassable3x3x3(tryLoc)) {
-                        newLoc = tryLoc;
-                    } else {
-                        break;
-                    }
-                }
-
-                // Needs to be final to keep the compiler happy.
-                final Location destination = newLoc;
-                if (destination != null) {
-                    Bukkit.getScheduler().runTaskLater(this, () -> {
-                        entity.teleport(destination);
-                        Util.doTeleportEffects(mobType, destination);
-                    }, 1);
-                }
+                EFFECTS.teleport(entity, newLoc, mobType, 1);
             }
         }
     } // onEntityDamage
 
+    // ------------------------------------------------------------------------
+    /**
+     * Summon the support mobs of a mob.
+     *
+     * The support mobs target the summoner's target. They are spread over the
+     * 3x3 columns of a passable 3x3x3 space at the summoner's feet, if there
+     * is one, or otherwise spawn one block above the summoner.
+     *
+     * @param summoner  the mob summoning support.
+     * @param mobType   the summoner's mob type.
+     * @param lootOrMob the DropSet or MobType of the "support-mobs" property.
+     */
+    protected void summonSupportMobs(LivingEntity summoner, MobType mobType, Object lootOrMob) {
+        if (!summoner.isValid()) {
+            return;
+        }
+
+        Location summonerLoc = summoner.getLocation();
+        int x = summonerLoc.getBlockX();
+        int y = summonerLoc.getBlockY();
+        int z = summonerLoc.getBlockZ();
+        _passability.load(summonerLoc.getWorld(), x, z, y - 3, 7);
+        int safeY = _passability.findSafeY(y + 1, 3, 2);
+
+        Location supportLocation;
+        boolean spread = (safeY != PassabilityGrid.NO_Y);
+        if (spread) {
+            supportLocation = new Location(summonerLoc.getWorld(), x + 0.5, safeY, z + 0.5);
+        } else {
+            supportLocation = summonerLoc.clone().add(0, 1, 0);
+        }
+
+        // Summon support mobs targeting same target as summoner.
+        LivingEntity summonerTarget = (summoner instanceof Mob) ? ((Mob) summoner).getTarget() : null;
+        int[] spawnCount = { 0 };
+        DropResults results = new DropResults();
+        results.setMobHandler(mob -> {
+            if (spread) {
+                int cell = spawnCount[0]++ % SUPPORT_SPREAD_DX.length;
+                mob.teleport(supportLocation.clone().add(SUPPORT_SPREAD_DX[cell], 0, SUPPORT_SPREAD_DZ[cell]));
+            }
+            if (summonerTarget != null && mob instanceof Mob) {
+                ((Mob) mob).setTarget(summonerTarget);
+            }
+        });
+
+        List<LivingEntity> supportMobs = spawnMultipleMobs(supportLocation, lootOrMob, false, results,
+                                                           new DropTrigger(mobType.getId(), "summoned", "support-mobs"));
+        if (CONFIG.DEBUG_SUPPORT_MOBS) {
+            getLogger().info("Support mobs for: " + mobType.getId() + ": spawned " + supportMobs.size());
+        }
+    }
+
     // ------------------------------------------------------------------------
     /**
      * Tag mobs hurt by players with the time stamp of the damage event to
@@ -746,16 +875,14 @@ public class BeastMaster extends JavaPlugin implements Listener {
 
         if (event.getDamager() instanceof Player) {
             attackingPlayer = (Player) event.getDamager();
-            EntityMeta.api().set(damagedEntity, this, DAMAGED_BY_PLAYER_NAME, attackingPlayer.getName());
-            EntityMeta.api().set(damagedEntity, this, DAMAGED_BY_PLAYER_TIME, damagedEntity.getWorld().getFullTime());
+            DAMAGE.recordPlayerDamage(damagedEntity, attackingPlayer);
         } else if (event.getDamager() instanceof LivingEntity) {
             attackingMob = (LivingEntity) event.getDamager();
         } else if (event.getDamager() instanceof Projectile) {
             Projectile projectile = (Projectile) event.getDamager();
             if (projectile.getShooter() instanceof Player) {
                 attackingPlayer = (Player) projectile.getShooter();
-                EntityMeta.api().set(damagedEntity, this, DAMAGED_BY_PLAYER_NAME, attackingPlayer.getName());
-                EntityMeta.api().set(damagedEntity, this, DAMAGED_BY_PLAYER_TIME, damagedEntity.getWorld().getFullTime());
+                DAMAGE.recordPlayerDamage(damagedEntity, attackingPlayer);
             } else if (projectile.getShooter() instanceof LivingEntity) {
                 attackingMob = (LivingEntity) projectile.getShooter();
             }
@@ -776,8 +903,7 @@ public class BeastMaster extends JavaPlugin implements Listener {
 
                 // Should damaged mobs immediately switch target to the damager?
                 if (damagedEntity instanceof Mob) {
-                    Boolean targetDamager = (Boolean) damagedMobType.getDerivedProperty("target-damager").getValue();
-                    if (targetDamager != null && targetDamager) {
+                    if (damagedMobType.hasBehaviour(MobType.HAS_TARGET_DAMAGER)) {
                         Mob damagedMob = (Mob) damagedEntity;
                         if (attackingPlayer != null) {
                             damagedMob.setTarget(attackingPlayer);
@@ -790,21 +916,26 @@ public class BeastMaster extends JavaPlugin implements Listener {
                 }
             }
 
+            if (!attackingMobType.hasBehaviour(MobType.ON_ATTACK)) {
+                return;
+            }
+
             // Apply attackingMob's attack-potions, if set.
-            String potionSetId = (String) attackingMobType.getDerivedProperty("attack-potions").getValue();
-            PotionSet potionSet = POTIONS.getPotionSet(potionSetId);
-            if (potionSet != null) {
-                potionSet.apply((LivingEntity) damagedEntity);
+            if (attackingMobType.hasBehaviour(MobType.HAS_ATTACK_POTIONS)) {
+                PotionSet potionSet = (PotionSet) attackingMobType.getDerivedProperty("attack-potions").getLinkedValue();
+                if (potionSet != null) {
+                    potionSet.apply((LivingEntity) damagedEntity);
+                }
             }
 
             // Play the melee-attack-sound.
-            SoundEffect sound = (SoundEffect) attackingMobType.getDerivedProperty("melee-attack-sound").getValue();
-            if (sound != null) {
+            if (attackingMobType.hasBehaviour(MobType.HAS_ATTACK_SOUND)) {
+                SoundEffect sound = (SoundEffect) attackingMobType.getDerivedProperty("melee-attack-sound").getValue();
                 sound.play(damagedEntity.getLocation());
             }
 
             // Nerf warden sonic boom attack?
-            if (event.getCause() == DamageCause.SONIC_BOOM) {
+            if (event.getCause() == DamageCause.SONIC_BOOM && attackingMobType.hasBehaviour(MobType.HAS_SONIC_BOOM_SCALE)) {
                 Double scaleFactor = (Double) attackingMobType.getDerivedProperty("sonic-boom-damage-scale").getValue();
                 if (scaleFactor != null) {
                     // TODO: damage modifiers bamboozle me. Read!
@@ -824,6 +955,7 @@ public class BeastMaster extends JavaPlugin implements Listener {
         if (!(entity instanceof LivingEntity)) {
             return;
         }
+        DISGUISES.unregister(entity);
 
         // Note: Ghasts and Slimes are not Monsters... Players and ArmorStands
         // are LivingEntities. #currentyear
@@ -831,43 +963,35 @@ public class BeastMaster extends JavaPlugin implements Listener {
         if (mobType != null) {
             Location loc = entity.getLocation();
 
-            // If the mob has been damaged by a player recently, work out that
-            // player's name.
-            String victoriousPlayerName = null;
-            Long damageTime = (Long) EntityMeta.api().get(entity, this, DAMAGED_BY_PLAYER_TIME);
-            boolean damagedByPlayer = damageTime != null &&
-                                      loc.getWorld().getFullTime() - damageTime < PLAYER_DAMAGE_TICKS;
+            // If the mob has been damaged by a player recently, work out who.
+            UUID victoriousPlayerId = DAMAGE.getRecentAttackerId(entity, PLAYER_DAMAGE_TICKS);
+            boolean damagedByPlayer = (victoriousPlayerId != null);
 
             if (damagedByPlayer) {
                 MobProperty experience = mobType.getDerivedProperty("experience");
                 if (experience.getValue() != null) {
                     event.setDroppedExp((Integer) experience.getValue());
                 }
-
-                victoriousPlayerName = (String) EntityMeta.api().get(entity, this, DAMAGED_BY_PLAYER_NAME);
             }
 
             DropSet drops = mobType.getDrops();
             if (drops != null) {
-                StringBuilder trigger = new StringBuilder();
-
-                Player victoriousPlayer = (victoriousPlayerName != null) ? Bukkit.getPlayerExact(victoriousPlayerName) : null;
-                trigger.append((victoriousPlayer != null) ? victoriousPlayer.getName() : "<environment>");
-                trigger.append(" killed ");
-                trigger.append(mobType.getId());
+                Player victoriousPlayer = damagedByPlayer ? Bukkit.getPlayer(victoriousPlayerId) : null;
+                DropTrigger trigger = new DropTrigger(victoriousPlayer, "killed", mobType.getId());
 
+                // Drop the mob's experience in the same orb as the loot.
                 DropResults results = new DropResults();
-                drops.generateRandomDrops(results, trigger.toString(), victoriousPlayer, entity.getLocation(), damagedByPlayer);
+                results.addExperience(event.getDroppedExp());
+                event.setDroppedExp(0);
+                drops.generateRandomDrops(results, trigger, victoriousPlayer, entity.getLocation(), damagedByPlayer);
                 if (!results.includesVanillaDrop()) {
                     event.getDrops().clear();
                 }
             }
 
             SoundEffect deathSound = (SoundEffect) mobType.getDerivedProperty("death-sound").getValue();
-            if (deathSound != null) {
-                // Mysteriously doesn't work unless delayed 2 ticks. Disguises?
-                Bukkit.getScheduler().runTaskLater(this, () -> deathSound.play(loc), 2);
-            }
+            // Mysteriously doesn't work unless delayed 2 ticks. Disguises?
+            EFFECTS.playSound(deathSound, loc, 2);
 
             if (CONFIG.DEBUG_EQUIPMENT_DROPS) {
                 // If the entity has a MobType, it's a LivingEntity.
@@ -881,7 +1005,7 @@ public class BeastMaster extends JavaPlugin implements Listener {
                 debug(mobType.getId() + " event drops: " + event.getDrops().stream().map(Util::getItemDescription).collect(Collectors.joining(", ")));
             }
         }
-
+        DAMAGE.forget(entity);
     } // onEntityDeath
 
     // ------------------------------------------------------------------------
@@ -892,12 +1016,7 @@ public class BeastMaster extends JavaPlugin implements Listener {
     protected void onSlimeSplit(SlimeSplitEvent event) {
         Slime slime = event.getEntity();
         MobType mobType = getMobType(slime);
-        if (mobType == null) {
-            return;
-        }
-
-        Boolean canSplit = (Boolean) mobType.getDerivedProperty("slime-can-split").getValue();
-        if (canSplit != null && !canSplit) {
+        if (mobType != null && mobType.hasBehaviour(MobType.HAS_NO_SLIME_SPLIT)) {
             event.setCancelled(true);
         }
     }
@@ -938,22 +1057,41 @@ public class BeastMaster extends JavaPlugin implements Listener {
         }
 
         MobType mobType = getMobType(entity);
-        if (mobType != null) {
+        if (mobType != null && mobType.hasBehaviour(MobType.HAS_TELEPORT_SOUND)) {
             SoundEffect sound = (SoundEffect) mobType.getDerivedProperty("teleport-sound").getValue();
-            if (sound != null) {
-                // Mysteriously doesn't work unless delayed 1 tick. Disguises?
-                Bukkit.getScheduler().runTaskLater(this, () -> sound.play(event.getFrom()), 1);
-            }
+            // Mysteriously doesn't work unless delayed 1 tick. Disguises?
+            EFFECTS.playSound(sound, event.getFrom(), 1);
         }
     }
 
     // ------------------------------------------------------------------------
     /**
-     * When loading a chunk, apply disguises if not null/empty.
+     * When loading a chunk, restore persisted objectives.
      */
     @EventHandler(ignoreCancelled = true)
     protected void onChunkLoad(ChunkLoadEvent event) {
-        DISGUISES.loadDisguises(event.getChunk());
+        OBJECTIVES.restoreObjectives(event.getChunk());
+    }
+
+    // ------------------------------------------------------------------------
+    /**
+     * When the entities in a chunk load, queue them to have their disguises
+     * applied, if not null/empty.
+     *
+     * Entities load separately from, and often after, chunk terrain.
+     */
+    @EventHandler(ignoreCancelled = true)
+    protected void onEntitiesLoad(EntitiesLoadEvent event) {
+        DISGUISES.queueDisguises(event.getEntities());
+    }
+
+    // ------------------------------------------------------------------------
+    /**
+     * When entities unload, persist their damage attribution.
+     */
+    @EventHandler(ignoreCancelled = true)
+    protected void onEntitiesUnload(EntitiesUnloadEvent event) {
+        DAMAGE.flush(event.getEntities());
     }
 
     // ------------------------------------------------------------------------
@@ -962,17 +1100,7 @@ public class BeastMaster extends JavaPlugin implements Listener {
      */
     @EventHandler(ignoreCancelled = true)
     protected void onChunkUnload(ChunkUnloadEvent event) {
-        for (Entity entity : event.getChunk().getEntities()) {
-            if (entity instanceof LivingEntity) {
-                MobType mobType = getMobType(entity);
-                if (mobType != null) {
-                    String encodedDisguise = (String) mobType.getDerivedProperty("disguise").getValue();
-                    if (encodedDisguise != null && !encodedDisguise.isEmpty()) {
-                        DISGUISES.destroyDisguise(entity, event.getWorld());
-                    }
-                }
-            }
-        }
+        DISGUISES.unloadDisguises(event.getChunk());
     }
 
     // ------------------------------------------------------------------------
@@ -1001,16 +1129,46 @@ public class BeastMaster extends JavaPlugin implements Listener {
             return;
         }
 
-        StringBuilder trigger = new StringBuilder();
-        trigger.append(event.getPlayer().getName());
-        trigger.append(" broke ");
-        trigger.append(block.getType());
-
+        DropTrigger trigger = new DropTrigger(event.getPlayer(), "broke", block.getType());
         DropResults results = new DropResults();
-        drops.generateRandomDrops(results, trigger.toString(), event.getPlayer(), loc, true);
+        drops.generateRandomDrops(results, trigger, event.getPlayer(), loc, true);
         event.setDropItems(results.includesVanillaDrop());
     }
 
+    // ------------------------------------------------------------------------
+    /**
+     * Generate the mining drops of all blocks destroyed by an explosion that
+     * were not placed by players.
+     *
+     * The explosion's blocks and their vanilla drops are left unchanged, since
+     * an explosion has no per-block control over drops. Custom drops are
+     * therefore in addition to vanilla drops, even where the mining drops
+     * table would replace them when the block is mined.
+     *
+     * @param blocks the list of blocks destroyed by the explosion.
+     * @param actor  the Player or other object that caused the explosion, or
+     *               null for the environment; used for logging.
+     * @param player the player who caused the explosion, or null.
+     */
+    protected void handleExplosionCustomDrops(Collection<Block> blocks, Object actor, Player player) {
+        Set<Material> materials = null;
+        for (Block block : blocks) {
+            if (materials == null) {
+                materials = ZONES.getMiningMaterials(block.getWorld());
+            }
+            if (!materials.contains(block.getType()) || BlockStoreApi.isPlaced(block)) {
+                continue;
+            }
+
+            Location loc = block.getLocation().add(0.5, 0.5, 0.5);
+            DropSet drops = ZONES.getZone(loc).getMiningDrops(block.getType(), true);
+            if (drops != null) {
+                drops.generateRandomDrops(new DropResults(), new DropTrigger(actor, "exploded", block.getType()),
+                                          player, loc, true);
+            }
+        }
+    }
+
     // ------------------------------------------------------------------------
     /**
      * In the plains biome in the nether environment, replace the configured
@@ -1087,17 +1245,6 @@ public class BeastMaster extends JavaPlugin implements Listener {
     }
 
     // ------------------------------------------------------------------------
-    /**
-     * Persistent metadata key used to record name of player that damaged a mob.
-     */
-    protected static final String DAMAGED_BY_PLAYER_NAME = "damage-player";
-
-    /**
-     * Persistent metadata key used to record the full world time when a mob was
-     * damaged by a player.
-     */
-    protected static final String DAMAGED_BY_PLAYER_TIME = "damage-time";
-
     /**
      * Time in ticks (1/20ths of a second) for which player attack damage
      * "sticks" to a mob. The time between the last player damage on a mob and
@@ -1144,4 +1291,36 @@ public class BeastMaster extends JavaPlugin implements Listener {
      * track of the number of calls with this variable.
      */
     protected int _spawnMobRecursion;
+
+    /**
+     * X offsets of the columns that support mobs are spread over, centre
+     * first.
+     */
+    protected static final int[] SUPPORT_SPREAD_DX = { 0, 1, -1, 0, 0, 1, -1, 1, -1 };
+
+    /**
+     * Z offsets of the columns that support mobs are spread over,
+     * corresponding to {@link #SUPPORT_SPREAD_DX}.
+     */
+    protected static final int[] SUPPORT_SPREAD_DZ = { 0, 0, 0, 1, -1, 1, -1, -1, 1 };
+
+    /**
+     * Map from mob to the server tick when it last summoned support mobs.
+     *
+     * Weak keys let unloaded and dead mobs be forgotten.
+     */
+    protected WeakHashMap<LivingEntity, Integer> _supportSummonTicks = new WeakHashMap<>();
+
+    /**
+     * Reusable grid used to search for safe hurt-teleport destinations and
+     * support mob locations.
+     */
+    protected PassabilityGrid _passability = new PassabilityGrid();
+
+    /**
+     * Map from shooting mob to its most recent projectile volley.
+     *
+     * Weak keys let unloaded and dead mobs be forgotten.
+     */
+    protected WeakHashMap<LivingEntity, ProjectileVolley> _volleys = new WeakHashMap<>();
 } // class BeastMaster
\ No newline at end of file
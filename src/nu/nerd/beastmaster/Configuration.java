@@ -49,6 +49,67 @@ public class Configuration {
      */
     public double CHANCE_WITHER_SKELETON;
 
+    /**
+     * If true, experience dropped by loot tables is deferred to the next tick
+     * and merged with all other experience dropped in the same block.
+     */
+    public boolean DEFER_EXPERIENCE;
+
+    /**
+     * A MOB drop that spawns more mobs than this is spread over several ticks
+     * by the {@link SpawnScheduler}.
+     */
+    public int STAGGERED_MOB_THRESHOLD;
+
+    /**
+     * The maximum number of mobs spawned per tick by the
+     * {@link SpawnScheduler}.
+     */
+    public int MOB_SPAWNS_PER_TICK;
+
+    /**
+     * If true, blocks broken by explosions generate mining drops.
+     *
+     * Explosion mining drops are added to the vanilla drops of the exploded
+     * blocks, even where the mining drops table would replace them.
+     */
+    public boolean EXPLOSION_MINING_DROPS;
+
+    /**
+     * The minimum number of ticks between summons of support mobs by the same
+     * mob.
+     */
+    public int SUPPORT_COOLDOWN_TICKS;
+
+    /**
+     * The maximum number of support mob summons per tick, server-wide. Excess
+     * summons are queued until later ticks.
+     */
+    public int SUPPORT_SUMMONS_PER_TICK;
+
+    /**
+     * The maximum number of projectile mobs spawned by the projectiles that
+     * one mob launches in one tick, or zero or less for no limit.
+     */
+    public int PROJECTILE_MOBS_PER_VOLLEY;
+
+    /**
+     * The maximum time, in nanoseconds, spent restoring the disguises of
+     * loaded mobs in each tick.
+     */
+    public long DISGUISE_RESTORE_BUDGET_NS;
+
+    /**
+     * The period, in ticks, between particle effects around objectives.
+     */
+    public int OBJECTIVE_PARTICLE_PERIOD;
+
+    /**
+     * Particle effects are only spawned around objectives within this
+     * horizontal distance of a player.
+     */
+    public double OBJECTIVE_PARTICLE_RANGE;
+
     /**
      * EntityTypes that cannot be used in custom mob types.
      */
@@ -70,6 +131,16 @@ public class Configuration {
         DEBUG_EQUIPMENT_DROPS = config.getBoolean("debug.equipment-drops");
         DEBUG_SUPPORT_MOBS = config.getBoolean("debug.support-mobs");
         CHANCE_WITHER_SKELETON = config.getDouble("chance.wither-skeleton");
+        DEFER_EXPERIENCE = config.getBoolean("drops.defer-experience");
+        STAGGERED_MOB_THRESHOLD = config.getInt("drops.staggered-mob-threshold");
+        MOB_SPAWNS_PER_TICK = config.getInt("drops.mob-spawns-per-tick");
+        EXPLOSION_MINING_DROPS = config.getBoolean("drops.explosion-mining-drops");
+        SUPPORT_COOLDOWN_TICKS = config.getInt("support-mobs.cooldown-ticks");
+        SUPPORT_SUMMONS_PER_TICK = config.getInt("support-mobs.summons-per-tick");
+        PROJECTILE_MOBS_PER_VOLLEY = config.getInt("projectile-mobs.max-per-volley");
+        DISGUISE_RESTORE_BUDGET_NS = config.getLong("disguises.restore-budget-ns");
+        OBJECTIVE_PARTICLE_PERIOD = config.getInt("objective-effects.particle-period-ticks");
+        OBJECTIVE_PARTICLE_RANGE = config.getDouble("objective-effects.particle-range");
 
         EXCLUDED_ENTITY_TYPES.clear();
         for (String excluded : config.getStringList("excluded-entity-types")) {
@@ -86,6 +157,7 @@ public class Configuration {
         BeastMaster.LOOTS.load(config, logger);
         BeastMaster.OBJECTIVE_TYPES.load(config, logger);
         BeastMaster.POTIONS.load(config, logger);
+        BeastMaster.LINKS.linkAll(logger);
 
         if (log) {
             logger.info("Configuration:");
@@ -95,6 +167,16 @@ public class Configuration {
             logger.info("DEBUG_EQUIPMENT_DROPS: " + DEBUG_EQUIPMENT_DROPS);
             logger.info("DEBUG_SUPPORT_MOBS: " + DEBUG_SUPPORT_MOBS);
             logger.info("CHANCE_WITHER_SKELETON: " + CHANCE_WITHER_SKELETON);
+            logger.info("DEFER_EXPERIENCE: " + DEFER_EXPERIENCE);
+            logger.info("STAGGERED_MOB_THRESHOLD: " + STAGGERED_MOB_THRESHOLD);
+            logger.info("MOB_SPAWNS_PER_TICK: " + MOB_SPAWNS_PER_TICK);
+            logger.info("EXPLOSION_MINING_DROPS: " + EXPLOSION_MINING_DROPS);
+            logger.info("SUPPORT_COOLDOWN_TICKS: " + SUPPORT_COOLDOWN_TICKS);
+            logger.info("SUPPORT_SUMMONS_PER_TICK: " + SUPPORT_SUMMONS_PER_TICK);
+            logger.info("PROJECTILE_MOBS_PER_VOLLEY: " + PROJECTILE_MOBS_PER_VOLLEY);
+            logger.info("DISGUISE_RESTORE_BUDGET_NS: " + DISGUISE_RESTORE_BUDGET_NS);
+            logger.info("OBJECTIVE_PARTICLE_PERIOD: " + OBJECTIVE_PARTICLE_PERIOD);
+            logger.info("OBJECTIVE_PARTICLE_RANGE: " + OBJECTIVE_PARTICLE_RANGE);
 
             logger.info("EXCLUDED_ENTITY_TYPES: " + EXCLUDED_ENTITY_TYPES.stream()
                 .map(EntityType::toString).collect(Collectors.joining(", ")));
@@ -134,10 +216,14 @@ public class Configuration {
     // ------------------------------------------------------------------------
     /**
      * Save updated configuration.
+     *
+     * All commands that edit the configuration call this method, so it also
+     * links objects whose references were changed by the edit.
      */
     public void save() {
         FileConfiguration config = BeastMaster.PLUGIN.getConfig();
         Logger logger = BeastMaster.PLUGIN.getLogger();
+        BeastMaster.LINKS.relink(logger);
 
         BeastMaster.ZONES.save(config, logger);
         BeastMaster.ITEMS.save(config, logger);
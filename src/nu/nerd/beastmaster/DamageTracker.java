@@ -0,0 +1,150 @@
+package nu.nerd.beastmaster;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.UUID;
+import java.util.WeakHashMap;
+
+import org.bukkit.entity.Entity;
+import org.bukkit.entity.Player;
+
+// ----------------------------------------------------------------------------
+/**
+ * Tracks which player most recently damaged each mob, and when.
+ *
+ * Attribution is held in memory, keyed by entity, and updated in place on
+ * each hit. It is written to the mob's {@link EntityData} only when the mob
+ * unloads or the plugin is disabled, and read back from there if a mob dies
+ * with no attribution in memory.
+ */
+public class DamageTracker {
+    // ------------------------------------------------------------------------
+    /**
+     * Record that a player damaged a mob.
+     *
+     * @param entity the damaged mob.
+     * @param player the attacking player.
+     */
+    public void recordPlayerDamage(Entity entity, Player player) {
+        long[] record = _records.get(entity);
+        if (record == null) {
+            record = new long[RECORD_LENGTH];
+            _records.put(entity, record);
+        }
+
+        UUID playerId = player.getUniqueId();
+        record[PLAYER_MOST] = playerId.getMostSignificantBits();
+        record[PLAYER_LEAST] = playerId.getLeastSignificantBits();
+        record[TIME] = entity.getWorld().getFullTime();
+    }
+
+    // ------------------------------------------------------------------------
+    /**
+     * Return the UUID of the player who damaged a mob within the specified
+     * number of ticks.
+     *
+     * @param entity   the mob.
+     * @param maxTicks the maximum age of the damage in ticks, exclusive.
+     * @return the UUID of the player, or null if the mob was not damaged by a
+     *         player that recently.
+     */
+    public UUID getRecentAttackerId(Entity entity, long maxTicks) {
+        long now = entity.getWorld().getFullTime();
+        long[] record = _records.get(entity);
+        if (record != null) {
+            return (now - record[TIME] < maxTicks) ? new UUID(record[PLAYER_MOST], record[PLAYER_LEAST])
+                                                   : null;
+        }
+
+        Long time = BeastMaster.ENTITY_DATA.getDamageTime(entity);
+        return (time != null && now - time < maxTicks) ? BeastMaster.ENTITY_DATA.getDamagePlayer(entity) : null;
+    }
+
+    // ------------------------------------------------------------------------
+    /**
+     * Discard the attribution of a mob, without writing it to metadata.
+     *
+     * This is called when the mob dies.
+     *
+     * @param entity the mob.
+     */
+    public void forget(Entity entity) {
+        _records.remove(entity);
+    }
+
+    // ------------------------------------------------------------------------
+    /**
+     * Write the attribution of the specified mobs to persistent metadata and
+     * discard it from memory.
+     *
+     * This is called when the mobs unload.
+     *
+     * @param entities the mobs.
+     */
+    public void flush(Collection<? extends Entity> entities) {
+        if (_records.isEmpty()) {
+            return;
+        }
+        for (Entity entity : entities) {
+            long[] record = _records.remove(entity);
+            if (record != null) {
+                write(entity, record);
+            }
+        }
+    }
+
+    // ------------------------------------------------------------------------
+    /**
+     * Write the attribution of all tracked mobs to persistent metadata and
+     * discard it from memory.
+     *
+     * This is called when the plugin is disabled.
+     */
+    public void flushAll() {
+        for (Map.Entry<Entity, long[]> entry : _records.entrySet()) {
+            write(entry.getKey(), entry.getValue());
+        }
+        _records.clear();
+    }
+
+    // ------------------------------------------------------------------------
+    /**
+     * Write one attribution record to persistent metadata.
+     *
+     * @param entity the mob.
+     * @param record the record.
+     */
+    protected void write(Entity entity, long[] record) {
+        BeastMaster.ENTITY_DATA.setPlayerDamage(entity, new UUID(record[PLAYER_MOST], record[PLAYER_LEAST]), record[TIME]);
+    }
+
+    // ------------------------------------------------------------------------
+    /**
+     * Index of the most significant bits of the player's UUID in a record.
+     */
+    protected static final int PLAYER_MOST = 0;
+
+    /**
+     * Index of the least significant bits of the player's UUID in a record.
+     */
+    protected static final int PLAYER_LEAST = 1;
+
+    /**
+     * Index of the full world time of the damage in a record.
+     */
+    protected static final int TIME = 2;
+
+    /**
+     * Number of elements in a record.
+     */
+    protected static final int RECORD_LENGTH = 3;
+
+    /**
+     * Map from damaged mob to its attribution record.
+     *
+     * Weak keys let mobs that are removed without dying or unloading be
+     * forgotten.
+     */
+    protected WeakHashMap<Entity, long[]> _records = new WeakHashMap<>();
+
+} // class DamageTracker
@@ -1,12 +1,21 @@
 package nu.nerd.beastmaster;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.PriorityQueue;
+
 import org.bukkit.Bukkit;
 import org.bukkit.Chunk;
+import org.bukkit.Location;
 import org.bukkit.World;
 import org.bukkit.entity.Entity;
 import org.bukkit.entity.LivingEntity;
 import org.bukkit.entity.Player;
 import org.bukkit.entity.Projectile;
+import org.bukkit.scheduler.BukkitTask;
 
 import me.libraryaddict.disguise.DisguiseAPI;
 import me.libraryaddict.disguise.disguisetypes.Disguise;
@@ -20,50 +29,222 @@ import nu.nerd.beastmaster.mobs.MobType;
 public class DisguiseManager {
     // ------------------------------------------------------------------------
     /**
-     * Create disguises for all disguised custom mobs in the specified chunk.
+     * Queue entities that have loaded to have their disguises restored.
+     *
+     * Queued entities are processed on subsequent ticks, nearest to players
+     * first, for up to {@link Configuration#DISGUISE_RESTORE_BUDGET_NS} each
+     * tick. The distance to the nearest player is computed once, when the
+     * entity is queued.
      *
-     * @param chunk the chunk.
+     * @param entities the entities.
      */
-    public void loadDisguises(Chunk chunk) {
-        for (Entity entity : chunk.getEntities()) {
+    public void queueDisguises(Collection<? extends Entity> entities) {
+        // Order by squared distance to the nearest player. Non-negative float
+        // bits sort in the same order as the floats, so pack them above the
+        // index of the entity in _pending.
+        HashMap<World, List<Player>> worldPlayers = new HashMap<>();
+        for (Entity entity : entities) {
             if (entity instanceof LivingEntity) {
-                MobType mobType = BeastMaster.getMobType(entity);
-                if (mobType != null) {
-                    if (BeastMaster.CONFIG.DEBUG_DISGUISES) {
-                        BeastMaster.PLUGIN.debug("Loading " + entity.getType().name() +
-                                                 " " + entity.getUniqueId().toString() +
-                                                 " with MobType " + mobType.getId() +
-                                                 " at " + Util.formatLocation(entity.getLocation()));
-                    }
-                    String encodedDisguise = (String) mobType.getDerivedProperty("disguise").getValue();
-                    createDisguise(entity, chunk.getWorld(), encodedDisguise);
+                List<Player> players = worldPlayers.computeIfAbsent(entity.getWorld(), World::getPlayers);
+                float distanceSq = (float) nearestDistanceSq(entity.getLocation(), players);
+                _order.add(((long) Float.floatToIntBits(distanceSq) << 32) | _pending.size());
+                _pending.add(entity);
+            }
+        }
+
+        if (!_order.isEmpty() && _restoreTask == null) {
+            _restoreTask = Bukkit.getScheduler().runTaskTimer(BeastMaster.PLUGIN, this::restoreQueuedDisguises, 1, 1);
+        }
+    }
+
+    // ------------------------------------------------------------------------
+    /**
+     * Create the disguise of an entity if it is a disguised custom mob.
+     *
+     * @param entity the entity.
+     */
+    protected void loadDisguise(Entity entity) {
+        if (entity instanceof LivingEntity) {
+            MobType mobType = BeastMaster.getMobType(entity);
+            if (mobType != null) {
+                if (BeastMaster.CONFIG.DEBUG_DISGUISES) {
+                    BeastMaster.PLUGIN.debug("Loading " + entity.getType().name() +
+                                             " " + entity.getUniqueId().toString() +
+                                             " with MobType " + mobType.getId() +
+                                             " at " + Util.formatLocation(entity.getLocation()));
                 }
-            } else if (entity instanceof Projectile) {
-                // TODO: re-disguise projectile. Does this require metadata?
+                String encodedDisguise = (String) mobType.getDerivedProperty("disguise").getValue();
+                createDisguise(entity, entity.getWorld(), encodedDisguise);
+            }
+        } else if (entity instanceof Projectile) {
+            // TODO: re-disguise projectile. Does this require metadata?
+        }
+    }
+
+    // ------------------------------------------------------------------------
+    /**
+     * Restore the disguises of queued entities, nearest to players first,
+     * until the time budget for this tick is spent.
+     *
+     * At least one entity is processed each tick. The task stops when the
+     * queue is empty.
+     */
+    protected void restoreQueuedDisguises() {
+        long deadline = System.nanoTime() + BeastMaster.CONFIG.DISGUISE_RESTORE_BUDGET_NS;
+        boolean first = true;
+        while (!_order.isEmpty() && (first || System.nanoTime() < deadline)) {
+            int index = (int) _order.poll().longValue();
+            Entity entity = _pending.set(index, null);
+            if (entity.isValid()) {
+                loadDisguise(entity);
             }
+            first = false;
+        }
+
+        if (_order.isEmpty()) {
+            _pending.clear();
+            _restoreTask.cancel();
+            _restoreTask = null;
         }
     }
 
     // ------------------------------------------------------------------------
     /**
-     * Re-send disguises of all nearby entities within +/-4 chunks from the
-     * player.
+     * Return the squared distance from a location to the nearest player.
+     *
+     * @param loc     the location.
+     * @param players the players in the location's world.
+     * @return the squared distance to the nearest player, or Float.MAX_VALUE
+     *         if there are no players.
+     */
+    protected static double nearestDistanceSq(Location loc, List<Player> players) {
+        double nearest = Float.MAX_VALUE;
+        for (Player player : players) {
+            nearest = Math.min(nearest, player.getLocation().distanceSquared(loc));
+        }
+        return nearest;
+    }
+
+    // ------------------------------------------------------------------------
+    /**
+     * Re-send disguises of all disguised mobs within +/-4 chunks from the
+     * player, to that player only.
+     *
+     * Only mobs in the registry of disguised mobs are considered. Mobs that
+     * have wandered into another chunk since they were registered are
+     * re-registered under their current chunk.
      *
      * @param player the player.
      */
     public void sendNearbyDisguises(Player player) {
-        Chunk centreChunk = player.getLocation().getChunk();
-        World world = centreChunk.getWorld();
-        for (int dx = -4; dx <= 4; ++dx) {
-            for (int dz = -4; dz <= 4; ++dz) {
-                Chunk chunk = world.getChunkAt(centreChunk.getX() + dx, centreChunk.getZ() + dz);
-                if (chunk.isLoaded()) {
-                    loadDisguises(chunk);
+        World world = player.getWorld();
+        LongObjectMap<HashSet<Entity>> chunks = _disguised.get(world);
+        if (chunks == null) {
+            return;
+        }
+
+        int centreX = player.getLocation().getBlockX() >> 4;
+        int centreZ = player.getLocation().getBlockZ() >> 4;
+        ArrayList<Entity> candidates = new ArrayList<>();
+        for (int dx = -SEND_RADIUS - 1; dx <= SEND_RADIUS + 1; ++dx) {
+            for (int dz = -SEND_RADIUS - 1; dz <= SEND_RADIUS + 1; ++dz) {
+                HashSet<Entity> entities = chunks.get(Util.chunkKey(centreX + dx, centreZ + dz));
+                if (entities != null) {
+                    candidates.addAll(entities);
+                }
+            }
+        }
+
+        for (Entity entity : candidates) {
+            if (!entity.isValid()) {
+                unregister(entity);
+                continue;
+            }
+
+            // Update the registry if the entity has moved.
+            register(entity);
+            Location loc = entity.getLocation();
+            if (entity.getWorld() == world &&
+                Math.abs((loc.getBlockX() >> 4) - centreX) <= SEND_RADIUS &&
+                Math.abs((loc.getBlockZ() >> 4) - centreZ) <= SEND_RADIUS) {
+                resendDisguise(player, entity);
+            }
+        }
+    }
+
+    // ------------------------------------------------------------------------
+    /**
+     * Remove an entity from the registry of disguised mobs.
+     *
+     * @param entity the entity.
+     */
+    public void unregister(Entity entity) {
+        Long chunkKey = _registeredChunks.remove(entity);
+        if (chunkKey == null) {
+            return;
+        }
+
+        LongObjectMap<HashSet<Entity>> chunks = _disguised.get(entity.getWorld());
+        if (chunks != null) {
+            HashSet<Entity> entities = chunks.get(chunkKey);
+            if (entities != null && entities.remove(entity) && entities.isEmpty()) {
+                chunks.remove(chunkKey);
+                if (chunks.isEmpty()) {
+                    _disguised.remove(entity.getWorld());
                 }
             }
         }
     }
 
+    // ------------------------------------------------------------------------
+    /**
+     * Add a disguised mob to the registry under its current chunk, or move it
+     * there if already registered under a different chunk.
+     *
+     * @param entity the entity.
+     */
+    protected void register(Entity entity) {
+        Location loc = entity.getLocation();
+        long chunkKey = Util.chunkKey(loc.getBlockX() >> 4, loc.getBlockZ() >> 4);
+        Long oldChunkKey = _registeredChunks.get(entity);
+        if (oldChunkKey != null) {
+            if (oldChunkKey == chunkKey) {
+                return;
+            }
+            unregister(entity);
+        }
+
+        LongObjectMap<HashSet<Entity>> chunks = _disguised.computeIfAbsent(entity.getWorld(),
+                                                                            w -> new LongObjectMap<>());
+        HashSet<Entity> entities = chunks.get(chunkKey);
+        if (entities == null) {
+            entities = new HashSet<>();
+            chunks.put(chunkKey, entities);
+        }
+        entities.add(entity);
+        _registeredChunks.put(entity, chunkKey);
+    }
+
+    // ------------------------------------------------------------------------
+    /**
+     * Re-send the disguise of an entity to one player.
+     *
+     * Hiding and showing the entity makes the server send the entity to the
+     * player again, which the disguise plugin replaces with the disguise. If
+     * the entity has lost its disguise, it is re-created for all players.
+     *
+     * @param player the player.
+     * @param entity the disguised entity.
+     */
+    protected void resendDisguise(Player player, Entity entity) {
+        if (DisguiseAPI.isDisguised(entity)) {
+            player.hideEntity(BeastMaster.PLUGIN, entity);
+            player.showEntity(BeastMaster.PLUGIN, entity);
+        } else {
+            loadDisguise(entity);
+        }
+    }
+
     // ------------------------------------------------------------------------
     /**
      * Record an entity's current disguise.
@@ -78,9 +259,52 @@ public class DisguiseManager {
             return;
         }
 
+        Disguise template = getTemplate(entity, encodedDisguise);
+        if (template != null) {
+            createDisguise(entity, world, template.clone());
+        }
+    }
+
+    // ------------------------------------------------------------------------
+    /**
+     * Discard all cached disguise templates.
+     *
+     * This is called whenever a disguise property of a mob type changes.
+     */
+    public void invalidateTemplates() {
+        _templates.clear();
+        _invalidDisguises.clear();
+    }
+
+    // ------------------------------------------------------------------------
+    /**
+     * Return the parsed disguise for an encoded disguise string, which must be
+     * cloned before it is applied to an entity.
+     *
+     * Disguises are parsed once and cached, except those containing
+     * placeholders (%...%), which may depend on the entity and are parsed for
+     * each entity. Errors in a disguise are logged once.
+     *
+     * @param entity          the entity to be disguised.
+     * @param encodedDisguise the disguise encoded as a string; not null or
+     *                        empty.
+     * @return the parsed disguise, or null if it is invalid.
+     */
+    protected Disguise getTemplate(Entity entity, String encodedDisguise) {
+        boolean cacheable = (encodedDisguise.indexOf('%') < 0);
+        if (cacheable) {
+            Disguise template = _templates.get(encodedDisguise);
+            if (template != null || _invalidDisguises.contains(encodedDisguise)) {
+                return template;
+            }
+        }
+
         try {
-            Disguise disguise = DisguiseParser.parseDisguise(Bukkit.getConsoleSender(), entity, encodedDisguise);
-            createDisguise(entity, world, disguise);
+            Disguise template = DisguiseParser.parseDisguise(Bukkit.getConsoleSender(), entity, encodedDisguise);
+            if (cacheable) {
+                _templates.put(encodedDisguise, template);
+            }
+            return template;
         } catch (Throwable ex) {
             MobType mobType = BeastMaster.getMobType(entity);
             String mobTypeId = mobType != null ? mobType.getId() : entity.getType().name();
@@ -88,6 +312,10 @@ public class DisguiseManager {
             BeastMaster.PLUGIN.getLogger().severe("Error applying disguise \"" + encodedDisguise +
                                                   "\" to " + mobTypeId + ": " +
                                                   (cause != null ? cause.getMessage() : ex.getMessage()));
+            if (cacheable) {
+                _invalidDisguises.add(encodedDisguise);
+            }
+            return null;
         }
     }
 
@@ -106,6 +334,9 @@ public class DisguiseManager {
             BeastMaster.PLUGIN.debug("Sending disguise of " + mobTypeId + " in " + world.getName());
         }
         DisguiseAPI.disguiseToAll(entity, disguise);
+        if (entity instanceof LivingEntity) {
+            register(entity);
+        }
     }
 
     // ------------------------------------------------------------------------
@@ -120,9 +351,123 @@ public class DisguiseManager {
      * @param world  the world where the disguised applied.
      */
     public void destroyDisguise(Entity entity, World world) {
-        Bukkit.getScheduler().runTaskLater(BeastMaster.PLUGIN, () -> {
-            DisguiseAPI.undisguiseToAll(entity);
-        }, 1);
+        unregister(entity);
+        queueUndisguise(entity);
+    }
+
+    // ------------------------------------------------------------------------
+    /**
+     * Destroy the disguises of all registered disguised mobs in a chunk that
+     * is unloading.
+     *
+     * The mobs are undisguised in a single batch on the next tick. Registered
+     * mobs that have since moved into another chunk keep their disguises and
+     * are re-registered under their current chunk.
+     *
+     * @param chunk the unloading chunk.
+     */
+    public void unloadDisguises(Chunk chunk) {
+        LongObjectMap<HashSet<Entity>> chunks = _disguised.get(chunk.getWorld());
+        if (chunks == null) {
+            return;
+        }
+
+        HashSet<Entity> entities = chunks.get(Util.chunkKey(chunk.getX(), chunk.getZ()));
+        if (entities == null) {
+            return;
+        }
+
+        for (Entity entity : new ArrayList<>(entities)) {
+            Location loc = entity.getLocation();
+            if (entity.isValid() &&
+                ((loc.getBlockX() >> 4) != chunk.getX() || (loc.getBlockZ() >> 4) != chunk.getZ())) {
+                register(entity);
+            } else {
+                unregister(entity);
+                queueUndisguise(entity);
+            }
+        }
     }
 
+    // ------------------------------------------------------------------------
+    /**
+     * Queue an entity to be undisguised on the next tick.
+     *
+     * All entities queued in the same tick are undisguised by one task.
+     *
+     * @param entity the entity.
+     */
+    protected void queueUndisguise(Entity entity) {
+        _undisguised.add(entity);
+        if (_undisguiseTask == null) {
+            _undisguiseTask = Bukkit.getScheduler().runTaskLater(BeastMaster.PLUGIN, () -> {
+                ArrayList<Entity> undisguised = _undisguised;
+                _undisguised = new ArrayList<>();
+                _undisguiseTask = null;
+                for (Entity e : undisguised) {
+                    DisguiseAPI.undisguiseToAll(e);
+                }
+            }, 1);
+        }
+    }
+
+    // ------------------------------------------------------------------------
+    /**
+     * Chunks within this radius of a player, in chunks, have their disguises
+     * re-sent to the player when they join or respawn.
+     */
+    protected static final int SEND_RADIUS = 4;
+
+    /**
+     * Registry of disguised mobs: map from World to map from chunk key to the
+     * disguised mobs registered in that chunk.
+     */
+    protected HashMap<World, LongObjectMap<HashSet<Entity>>> _disguised = new HashMap<>();
+
+    /**
+     * Map from disguised mob to the key of the chunk it is registered under.
+     */
+    protected HashMap<Entity, Long> _registeredChunks = new HashMap<>();
+
+    /**
+     * Entities whose disguises are waiting to be restored, indexed by the low
+     * 32 bits of their {@link #_order} entries; processed entries are null.
+     *
+     * The list is cleared when the queue empties.
+     */
+    protected ArrayList<Entity> _pending = new ArrayList<>();
+
+    /**
+     * Queue of entities waiting to have their disguises restored, nearest to
+     * players first, as squared distance float bits packed above the entity's
+     * index in {@link #_pending}.
+     */
+    protected PriorityQueue<Long> _order = new PriorityQueue<>();
+
+    /**
+     * The repeating task that restores queued disguises, or null if not
+     * running.
+     */
+    protected BukkitTask _restoreTask;
+
+    /**
+     * Entities waiting to be undisguised on the next tick.
+     */
+    protected ArrayList<Entity> _undisguised = new ArrayList<>();
+
+    /**
+     * The task that undisguises queued entities, or null if not scheduled.
+     */
+    protected BukkitTask _undisguiseTask;
+
+    /**
+     * Map from encoded disguise string to parsed disguise.
+     */
+    protected HashMap<String, Disguise> _templates = new HashMap<>();
+
+    /**
+     * Encoded disguise strings that could not be parsed.
+     */
+    protected HashSet<String> _invalidDisguises = new HashSet<>();
+
 } // class DisguiseManager
\ No newline at end of file
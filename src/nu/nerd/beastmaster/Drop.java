@@ -5,13 +5,11 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.logging.Logger;
 
-import org.bukkit.Bukkit;
 import org.bukkit.ChatColor;
 import org.bukkit.Location;
 import org.bukkit.Sound;
 import org.bukkit.block.Block;
 import org.bukkit.configuration.ConfigurationSection;
-import org.bukkit.entity.ExperienceOrb;
 import org.bukkit.entity.LivingEntity;
 import org.bukkit.entity.Player;
 import org.bukkit.inventory.ItemStack;
@@ -19,7 +17,6 @@ import org.bukkit.inventory.meta.BookMeta;
 import org.bukkit.inventory.meta.ItemMeta;
 
 import nu.nerd.beastmaster.mobs.MobType;
-import nu.nerd.beastmaster.objectives.Objective;
 import nu.nerd.beastmaster.objectives.ObjectiveType;
 import nu.nerd.beastmaster.zones.Zone;
 
@@ -105,12 +102,11 @@ public class Drop implements Cloneable, Comparable<Drop> {
             throw new AssertionError("requested an ItemStack from a non-item Drop");
         }
 
-        Item item = BeastMaster.ITEMS.getItem(getId());
-        if (item == null) {
+        if (_item == null) {
             return null;
         }
 
-        ItemStack itemStack = item.getItemStack();
+        ItemStack itemStack = _item.getItemStack();
         if (itemStack != null) {
             itemStack = itemStack.clone();
             itemStack.setAmount(randomAmount());
@@ -122,35 +118,41 @@ public class Drop implements Cloneable, Comparable<Drop> {
     /**
      * Do all actions associated with this drop, including effects and XP.
      *
-     * If the drop is an item that spawns an objective, then check that the
-     * objective can be spawned before dropping the item.
+     * Experience is accumulated in the DropResults, to be dropped as a single
+     * orb by the caller.
+     *
+     * If the drop is an item that spawns an objective, then the item is only
+     * dropped once the objective has been placed, several ticks later. The
+     * experience, sound and log message of the drop happen at that time, and
+     * only if the objective is placed.
      *
      * @param results records some details about what was dropped.
-     * @param trigger a description of the event that triggered the drop, for
-     *                logging.
+     * @param trigger the event that triggered the drop, for logging.
      * @param player  the player that triggered the drop, or null.
      * @param loc     the Location of the drop.
      * @return true if the default vanilla drop should be dropped.
      */
-    public void generate(DropResults results, String trigger, Player player, Location loc) {
+    public void generate(DropResults results, DropTrigger trigger, Player player, Location loc) {
         // Invalid mob/item ID or inability to spawn objective makes drop fail.
+        // The number of items or mobs dropped is only needed for logging.
         boolean dropSucceeded;
-        String dropDescription;
+        int dropCount = 0;
+        boolean staggered = false;
 
         switch (getDropType()) {
         case ITEM: {
             ItemStack itemStack = randomItemStack();
-            dropSucceeded = (itemStack != null && trySpawnObjective(itemStack, loc));
+            dropSucceeded = (itemStack != null);
             if (dropSucceeded) {
-                if (isDirect()) {
-                    // PlayerInventory#addItem returns a HashMap detailing items
-                    // that failed to add.
-                    player.getInventory().addItem(itemStack).values().forEach(i -> doItemDrop(loc, player, i));
+                if (getObjectiveType() == null) {
+                    giveItem(player, loc, itemStack);
                 } else {
-                    doItemDrop(loc, player, itemStack);
+                    // Success is handled when the objective is placed.
+                    trySpawnObjective(itemStack, trigger, player, loc);
+                    dropSucceeded = false;
                 }
+                dropCount = itemStack.getAmount();
             }
-            dropDescription = "ITEM " + getId() + (dropSucceeded ? " x " + itemStack.getAmount() : " (invalid)");
             break;
         }
 
@@ -158,38 +160,44 @@ public class Drop implements Cloneable, Comparable<Drop> {
             // TODO: Potentially mobs could spawn in block that comes back.
             // TODO: Actually need to spawn mobs around the event location.
 
-            // Count the number of successful spawns.
-            int spawnCount = 0;
-            MobType mobType = BeastMaster.MOBS.getMobType(getId());
-            LivingEntity livingEntity = null;
+            // Count the number of successful spawns. Large numbers of mobs are
+            // spawned over several ticks; they are counted as scheduled, since
+            // spawns are skipped if the chunk has unloaded by then.
+            MobType mobType = _mobType;
             if (mobType != null) {
-                for (int i = 0; i < randomAmount(); ++i) {
-                    livingEntity = BeastMaster.PLUGIN.spawnMob(loc, mobType, !alwaysFits());
-                    if (livingEntity != null) {
-                        ++spawnCount;
-                        livingEntity.setInvulnerable(isInvulnerable());
-                        livingEntity.setGlowing(isGlowing());
-                        results.addMob(livingEntity);
+                int amount = results.reserveMobs(randomAmount());
+                if (amount > BeastMaster.CONFIG.STAGGERED_MOB_THRESHOLD) {
+                    for (int i = 0; i < amount; ++i) {
+                        BeastMaster.SPAWNS.schedule(() -> {
+                            if (loc.isChunkLoaded()) {
+                                spawnMob(loc, mobType, results);
+                            }
+                        });
+                    }
+                    dropCount = amount;
+                    staggered = true;
+                } else {
+                    for (int i = 0; i < amount; ++i) {
+                        if (spawnMob(loc, mobType, results) != null) {
+                            ++dropCount;
+                        }
                     }
                 }
             }
-            dropSucceeded = (spawnCount != 0);
-            dropDescription = "MOB " + getId() + (dropSucceeded ? " x " + spawnCount : " (invalid)");
+            dropSucceeded = (dropCount != 0);
             break;
         }
 
         default: // NOTHING or DEFAULT
-            dropDescription = getDropType().toString();
             dropSucceeded = true;
             break;
         }
 
         if (dropSucceeded) {
-            dropExperience(loc);
+            results.addExperience(getExperience());
             playSound(loc);
             if (isLogged()) {
-                Logger logger = BeastMaster.PLUGIN.getLogger();
-                logger.info(trigger + " @ " + Util.formatLocation(loc) + " --> " + dropDescription);
+                logOutcome(trigger, loc, getOutcomeDescription(dropCount, staggered));
             }
         }
 
@@ -201,26 +209,47 @@ public class Drop implements Cloneable, Comparable<Drop> {
 
     // ------------------------------------------------------------------------
     /**
-     * Play the sound of this drop at the specified Location.
+     * Log the outcome of this drop.
      *
-     * @param loc the location.
+     * @param trigger the event that triggered the drop.
+     * @param loc     the Location of the drop.
+     * @param outcome the description of the outcome.
      */
-    public void playSound(Location loc) {
-        if (_sound != null) {
-            loc.getWorld().playSound(loc, _sound, _soundVolume, _soundPitch);
+    protected void logOutcome(DropTrigger trigger, Location loc, String outcome) {
+        Logger logger = BeastMaster.PLUGIN.getLogger();
+        logger.info(trigger + " @ " + Util.formatLocation(loc) + " --> " + outcome);
+    }
+
+    // ------------------------------------------------------------------------
+    /**
+     * Return a description of a successful drop, for logging.
+     *
+     * @param dropCount the number of items or mobs dropped, or the number of
+     *                  mobs scheduled to spawn if staggered.
+     * @param staggered true if the mobs are spawned over several ticks.
+     * @return the description.
+     */
+    protected String getOutcomeDescription(int dropCount, boolean staggered) {
+        switch (getDropType()) {
+        case ITEM:
+            return "ITEM " + getId() + " x " + dropCount;
+        case MOB:
+            return staggered ? "MOB " + getId() + " x " + dropCount + " scheduled"
+                             : "MOB " + getId() + " x " + dropCount;
+        default:
+            return getDropType().toString();
         }
     }
 
     // ------------------------------------------------------------------------
     /**
-     * Drop the experience associated with this drop at the specified Location.
+     * Play the sound of this drop at the specified Location.
      *
      * @param loc the location.
      */
-    public void dropExperience(Location loc) {
-        if (_experience > 0) {
-            ExperienceOrb orb = loc.getWorld().spawn(loc, ExperienceOrb.class);
-            orb.setExperience(_experience);
+    public void playSound(Location loc) {
+        if (_sound != null) {
+            loc.getWorld().playSound(loc, _sound, _soundVolume, _soundPitch);
         }
     }
 
@@ -554,6 +583,30 @@ public class Drop implements Cloneable, Comparable<Drop> {
         _directToInventory = direct;
     }
 
+    // ------------------------------------------------------------------------
+    /**
+     * Return the {@link Item} dropped by this {@link DropType#ITEM} drop, as
+     * resolved by the most recent link phase.
+     *
+     * @return the Item, or null if this is not an item drop or the ID is
+     *         dangling.
+     */
+    public Item getItem() {
+        return _item;
+    }
+
+    // ------------------------------------------------------------------------
+    /**
+     * Return the {@link MobType} spawned by this {@link DropType#MOB} drop, as
+     * resolved by the most recent link phase.
+     *
+     * @return the MobType, or null if this is not a mob drop or the ID is
+     *         dangling.
+     */
+    public MobType getMobType() {
+        return _mobType;
+    }
+
     // ------------------------------------------------------------------------
     /**
      * Return true if this drop should be directly put into the player's
@@ -845,29 +898,65 @@ public class Drop implements Cloneable, Comparable<Drop> {
         return getId().compareToIgnoreCase(other.getId());
     }
 
+    // ------------------------------------------------------------------------
+    /**
+     * Resolve the item or mob type ID of this drop.
+     *
+     * @param owner  the {@link DropSet} containing this drop, which is
+     *               registered as dependent on the ID.
+     * @param logger the logger, used to warn about dangling references.
+     */
+    void link(DropSet owner, Logger logger) {
+        _item = null;
+        _mobType = null;
+        if (_dropType == DropType.ITEM) {
+            BeastMaster.LINKS.addDependency(owner, _id);
+            _item = BeastMaster.ITEMS.getItem(_id);
+            if (_item == null) {
+                logger.warning("Loot table " + owner.getId() + " drops unknown item " + _id + ".");
+            }
+        } else if (_dropType == DropType.MOB) {
+            BeastMaster.LINKS.addDependency(owner, _id);
+            _mobType = BeastMaster.MOBS.getMobType(_id);
+            if (_mobType == null) {
+                logger.warning("Loot table " + owner.getId() + " drops unknown mob type " + _id + ".");
+            }
+        }
+    }
+
     // ------------------------------------------------------------------------
     /**
      * Drops an item naturally near a player with a short delay.
      *
+     * The drop is queued in the {@link DropQueue}, which waits for the next
+     * tick and checks whether the block is actually unobstructed.
+     *
      * @param loc       the location.
      * @param player    the player.
      * @param itemStack the item.
      */
     protected void doItemDrop(Location loc, Player player, ItemStack itemStack) {
-        // To avoid drops occasionally spawning in a block and warping up to the
-        // surface, wait for the next tick and check whether the block is
-        // actually unobstructed. We don't attempt to save the drop if e.g.
-        // a mob is standing in lava, however.
-        Bukkit.getScheduler().scheduleSyncDelayedTask(BeastMaster.PLUGIN, () -> {
-            Block block = loc.getBlock();
-            Location revisedLoc = (block != null &&
-                                   !canAccomodateItemDrop(block) &&
-                                   player != null) ? player.getLocation()
-                                                   : loc;
-            org.bukkit.entity.Item item = revisedLoc.getWorld().dropItem(revisedLoc, itemStack);
-            item.setInvulnerable(isInvulnerable());
-            item.setGlowing(isGlowing());
-        }, 1);
+        BeastMaster.DROP_QUEUE.addItem(loc, player, itemStack, isInvulnerable(), isGlowing());
+    }
+
+    // ------------------------------------------------------------------------
+    /**
+     * Spawn one mob for this {@link DropType#MOB} drop and add it to the
+     * results.
+     *
+     * @param loc     the location.
+     * @param mobType the type of mob to spawn.
+     * @param results records the spawned mob.
+     * @return the spawned mob, or null if it could not be spawned.
+     */
+    protected LivingEntity spawnMob(Location loc, MobType mobType, DropResults results) {
+        LivingEntity livingEntity = BeastMaster.PLUGIN.spawnMob(loc, mobType, !alwaysFits());
+        if (livingEntity != null) {
+            livingEntity.setInvulnerable(isInvulnerable());
+            livingEntity.setGlowing(isGlowing());
+            results.addMob(livingEntity);
+        }
+        return livingEntity;
     }
 
     // ------------------------------------------------------------------------
@@ -886,34 +975,65 @@ public class Drop implements Cloneable, Comparable<Drop> {
 
     // ------------------------------------------------------------------------
     /**
-     * If this drop has an accompanying objective, try to spawn it.
+     * Give an item dropped by this drop to the player, if the drop is direct
+     * and there is a player, or drop it at the specified location.
      *
-     * @param item the generated dropped item.
-     * @return true if the drop is not an objective drop, or if it is and an
-     *         objective was successfully spawned. (Return false if an objective
-     *         drop failed to spawn an objective.)
-     */
-    protected boolean trySpawnObjective(ItemStack item, Location dropLoc) {
-        String objTypeId = getObjectiveType();
-        if (objTypeId == null) {
-            return true;
+     * @param player the player that triggered the drop, or null.
+     * @param loc    the Location of the drop.
+     * @param item   the generated dropped item.
+     */
+    protected void giveItem(Player player, Location loc, ItemStack item) {
+        if (isDirect() && player != null) {
+            // PlayerInventory#addItem returns a HashMap detailing items
+            // that failed to add.
+            player.getInventory().addItem(item).values().forEach(i -> doItemDrop(loc, player, i));
+        } else {
+            doItemDrop(loc, player, item);
         }
+    }
 
-        ObjectiveType objType = BeastMaster.OBJECTIVE_TYPES.getObjectiveType(objTypeId);
-        if (objType == null) {
-            return false;
-        }
+    // ------------------------------------------------------------------------
+    /**
+     * Try to spawn the objective accompanying this drop, and give the item
+     * once the objective has been placed.
+     *
+     * The search for an objective location takes several ticks, so the item
+     * is given later, and only if the objective is successfully spawned. The
+     * experience, sound and log message of a successful drop happen then too.
+     * Failure to spawn the objective is always logged.
+     *
+     * @param item    the generated dropped item.
+     * @param trigger the event that triggered the drop, for logging.
+     * @param player  the player that triggered the drop, or null.
+     * @param dropLoc the Location of the drop.
+     */
+    protected void trySpawnObjective(ItemStack item, DropTrigger trigger, Player player, Location dropLoc) {
+        ObjectiveType objType = BeastMaster.OBJECTIVE_TYPES.getObjectiveType(getObjectiveType());
         Zone zone = BeastMaster.ZONES.getZone(dropLoc);
-        if (zone == null) {
-            return false;
-        }
-        Objective obj = BeastMaster.OBJECTIVES.spawnObjective(objType, zone, dropLoc);
-        if (obj != null) {
-            substituteObjectiveText(item, obj.getLocation());
-            return true;
-        } else {
-            return false;
+        if (objType == null || zone == null) {
+            String reason = (objType == null) ? "unknown objective type " + getObjectiveType()
+                                              : "no zone";
+            logOutcome(trigger, dropLoc, getOutcomeDescription(item.getAmount(), false) +
+                                         " failed: " + reason);
+            return;
         }
+
+        BeastMaster.OBJECTIVES.spawnObjective(objType, zone, dropLoc, obj -> {
+            if (obj != null) {
+                substituteObjectiveText(item, obj.getLocation());
+                giveItem(player, dropLoc, item);
+                if (getExperience() > 0) {
+                    BeastMaster.DROP_QUEUE.addExperience(dropLoc, getExperience());
+                }
+                playSound(dropLoc);
+                if (isLogged()) {
+                    logOutcome(trigger, dropLoc, getOutcomeDescription(item.getAmount(), false));
+                }
+            } else {
+                logOutcome(trigger, dropLoc, getOutcomeDescription(item.getAmount(), false) +
+                                             " failed: no location for objective " + objType.getId());
+            }
+        });
     }
 
     // --------------------------------------------------------------------------
@@ -1044,4 +1164,16 @@ public class Drop implements Cloneable, Comparable<Drop> {
      */
     protected boolean _directToInventory;
 
+    /**
+     * The {@link Item} corresponding to {@link #_id} for item drops, resolved
+     * when the containing {@link DropSet} is linked.
+     */
+    protected Item _item;
+
+    /**
+     * The {@link MobType} corresponding to {@link #_id} for mob drops, resolved
+     * when the containing {@link DropSet} is linked.
+     */
+    protected MobType _mobType;
+
 } // class Drop
\ No newline at end of file
@@ -0,0 +1,170 @@
+package nu.nerd.beastmaster;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map.Entry;
+
+import org.bukkit.Bukkit;
+import org.bukkit.Location;
+import org.bukkit.block.Block;
+import org.bukkit.entity.ExperienceOrb;
+import org.bukkit.entity.Player;
+import org.bukkit.inventory.ItemStack;
+
+// ----------------------------------------------------------------------------
+/**
+ * Queues item drops and experience to be spawned together on the next tick.
+ *
+ * To avoid drops occasionally spawning in a block and warping up to the
+ * surface, drops are deferred until the next tick, when the block where they
+ * drop is checked for obstruction. Queueing all of the drops in a tick allows
+ * similar ItemStacks destined for the same block to be merged, and the
+ * obstruction check to be done once per block, with a single scheduled task
+ * per tick.
+ */
+public class DropQueue {
+    // ------------------------------------------------------------------------
+    /**
+     * Queue an ItemStack to be dropped at the specified location on the next
+     * tick.
+     *
+     * @param loc          the location.
+     * @param player       the player to drop the item at if the location is
+     *                     obstructed, or null.
+     * @param itemStack    the ItemStack.
+     * @param invulnerable whether the dropped item is invulnerable.
+     * @param glowing      whether the dropped item glows.
+     */
+    public void addItem(Location loc, Player player, ItemStack itemStack, boolean invulnerable, boolean glowing) {
+        Block block = loc.getBlock();
+        ArrayList<ItemDropBatch> batches = _batches.computeIfAbsent(block, b -> new ArrayList<>());
+        ItemDropBatch batch = null;
+        for (ItemDropBatch candidate : batches) {
+            if (candidate.hasAttributes(invulnerable, glowing)) {
+                batch = candidate;
+                break;
+            }
+        }
+        if (batch == null) {
+            batch = new ItemDropBatch(loc, invulnerable, glowing);
+            batches.add(batch);
+        }
+        batch.add(player, itemStack);
+        scheduleFlush();
+    }
+
+    // ------------------------------------------------------------------------
+    /**
+     * Drop experience at the specified location.
+     *
+     * If {@link Configuration#DEFER_EXPERIENCE} is true, the experience is
+     * queued until the next tick and merged with all other experience dropped
+     * in the same block in this tick. Otherwise, it is dropped immediately.
+     * Either way, it is dropped as a single orb.
+     *
+     * @param loc        the location.
+     * @param experience the amount of experience.
+     */
+    public void addExperience(Location loc, int experience) {
+        if (!BeastMaster.CONFIG.DEFER_EXPERIENCE) {
+            spawnExperienceOrb(loc, experience);
+            return;
+        }
+
+        Block block = loc.getBlock();
+        Integer total = _experience.get(block);
+        if (total == null) {
+            _experienceLocations.put(block, loc);
+            _experience.put(block, experience);
+        } else {
+            _experience.put(block, total + experience);
+        }
+        scheduleFlush();
+    }
+
+    // ------------------------------------------------------------------------
+    /**
+     * Spawn all queued drops immediately.
+     *
+     * This is called by the scheduled task on the tick after drops are queued,
+     * and when the plugin is disabled.
+     */
+    public void flush() {
+        _flushTaskId = -1;
+        if (!_experience.isEmpty()) {
+            for (Entry<Block, Integer> entry : _experience.entrySet()) {
+                spawnExperienceOrb(_experienceLocations.get(entry.getKey()), entry.getValue());
+            }
+            _experience.clear();
+            _experienceLocations.clear();
+        }
+
+        if (_batches.isEmpty()) {
+            return;
+        }
+
+        // Swap in a new map in case dropping items causes more to be queued.
+        LinkedHashMap<Block, ArrayList<ItemDropBatch>> batches = _batches;
+        _batches = new LinkedHashMap<>();
+
+        for (Entry<Block, ArrayList<ItemDropBatch>> entry : batches.entrySet()) {
+            // We don't attempt to save the drop if e.g. a mob is standing in
+            // lava, however.
+            boolean accomodating = Drop.canAccomodateItemDrop(entry.getKey());
+            for (ItemDropBatch batch : entry.getValue()) {
+                Player player = batch.getPlayer();
+                Location loc = (!accomodating && player != null) ? player.getLocation()
+                                                                 : batch.getLocation();
+                batch.drop(loc);
+            }
+        }
+    }
+
+    // ------------------------------------------------------------------------
+    /**
+     * Spawn a single experience orb.
+     *
+     * @param loc        the location.
+     * @param experience the amount of experience in the orb.
+     */
+    protected static void spawnExperienceOrb(Location loc, int experience) {
+        ExperienceOrb orb = loc.getWorld().spawn(loc, ExperienceOrb.class);
+        orb.setExperience(experience);
+    }
+
+    // ------------------------------------------------------------------------
+    /**
+     * Schedule a flush of the queue on the next tick, if not already
+     * scheduled.
+     */
+    protected void scheduleFlush() {
+        if (_flushTaskId == -1) {
+            _flushTaskId = Bukkit.getScheduler().scheduleSyncDelayedTask(BeastMaster.PLUGIN, this::flush, 1);
+        }
+    }
+
+    // ------------------------------------------------------------------------
+    /**
+     * Map from Block to batches of drops in that block, in the order they were
+     * queued.
+     */
+    protected LinkedHashMap<Block, ArrayList<ItemDropBatch>> _batches = new LinkedHashMap<>();
+
+    /**
+     * The ID of the scheduled flush task, or -1 if not scheduled.
+     */
+    protected int _flushTaskId = -1;
+
+    /**
+     * Map from Block to total queued experience dropped in that block.
+     */
+    protected LinkedHashMap<Block, Integer> _experience = new LinkedHashMap<>();
+
+    /**
+     * Map from Block to the location of the first experience drop queued in
+     * that block.
+     */
+    protected HashMap<Block, Location> _experienceLocations = new HashMap<>();
+
+} // class DropQueue
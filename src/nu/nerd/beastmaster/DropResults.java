@@ -2,7 +2,9 @@ package nu.nerd.beastmaster;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Consumer;
 
+import org.bukkit.Location;
 import org.bukkit.entity.LivingEntity;
 
 // ----------------------------------------------------------------------------
@@ -36,11 +38,67 @@ public class DropResults {
      */
     public void addMob(LivingEntity mob) {
         _mobs.add(mob);
+        if (_mobHandler != null) {
+            _mobHandler.accept(mob);
+        }
     }
 
     // ------------------------------------------------------------------------
     /**
-     * Return the mobs that were spawned.
+     * Set code to run on each mob added to the results.
+     * 
+     * Mobs can be added after the drops are generated, when large numbers of
+     * mobs are spawned over several ticks by the {@link SpawnScheduler}. The
+     * handler is the way to configure those mobs as well as the ones spawned
+     * immediately.
+     * 
+     * @param mobHandler the handler, or null.
+     */
+    public void setMobHandler(Consumer<LivingEntity> mobHandler) {
+        _mobHandler = mobHandler;
+    }
+
+    // ------------------------------------------------------------------------
+    /**
+     * Set the maximum number of mobs that may still be spawned for these
+     * results, including those spawned later by the {@link SpawnScheduler}.
+     * 
+     * @param mobLimit the maximum number of mobs.
+     */
+    public void setMobLimit(int mobLimit) {
+        _mobLimit = mobLimit;
+    }
+
+    // ------------------------------------------------------------------------
+    /**
+     * Return the number of mobs that may still be spawned for these results.
+     * 
+     * @return the number of mobs that may still be spawned.
+     */
+    public int getMobLimit() {
+        return _mobLimit;
+    }
+
+    // ------------------------------------------------------------------------
+    /**
+     * Reserve up to the specified number of mob spawns against the mob limit.
+     * 
+     * This is called before mobs are spawned or scheduled, so that the limit
+     * is an upper bound on the mobs that actually spawn.
+     * 
+     * @param amount the number of mobs to be spawned.
+     * @return the number of mobs that may be spawned, at most amount.
+     */
+    int reserveMobs(int amount) {
+        int reserved = Math.min(amount, _mobLimit);
+        _mobLimit -= reserved;
+        return reserved;
+    }
+
+    // ------------------------------------------------------------------------
+    /**
+     * Return the mobs that were spawned, which excludes mobs that have not yet
+     * been spawned by the {@link SpawnScheduler}.
      * 
      * @param the list of mobs.
      */
@@ -48,6 +106,31 @@ public class DropResults {
         return _mobs;
     }
 
+    // ------------------------------------------------------------------------
+    /**
+     * Add experience to the total to be dropped as a single orb once all drops
+     * for the trigger have been generated.
+     * 
+     * @param experience the amount of experience.
+     */
+    public void addExperience(int experience) {
+        _experience += experience;
+    }
+
+    // ------------------------------------------------------------------------
+    /**
+     * Drop all experience accumulated since the last call as a single orb,
+     * resetting the total to 0.
+     * 
+     * @param loc the location of the orb.
+     */
+    public void dropExperience(Location loc) {
+        if (_experience > 0) {
+            BeastMaster.DROP_QUEUE.addExperience(loc, _experience);
+            _experience = 0;
+        }
+    }
+
     // ------------------------------------------------------------------------
     /**
      * The list of mobs that were dropped.
@@ -58,4 +141,19 @@ public class DropResults {
      * True of the result includes the vanilla drops.
      */
     boolean _includesVanillaDrops;
+
+    /**
+     * The total experience of all drops that have not yet been dropped.
+     */
+    protected int _experience;
+
+    /**
+     * Code to run on each mob added to the results, or null.
+     */
+    protected Consumer<LivingEntity> _mobHandler;
+
+    /**
+     * The number of mobs that may still be spawned for these results.
+     */
+    protected int _mobLimit = Integer.MAX_VALUE;
 } // class DropResults
\ No newline at end of file
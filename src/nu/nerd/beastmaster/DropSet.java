@@ -17,7 +17,7 @@ import org.bukkit.entity.Player;
 /**
  * Represents a set of drops.
  */
-public class DropSet {
+public class DropSet implements ILinkable {
     // ------------------------------------------------------------------------
     /**
      * Constructor.
@@ -101,6 +101,7 @@ public class DropSet {
     public void addDrop(Drop drop) {
         invalidateWeightedSelection();
         _drops.put(drop.getId().toLowerCase(), drop);
+        BeastMaster.LINKS.markDirty(this);
     }
 
     // ------------------------------------------------------------------------
@@ -198,14 +199,16 @@ public class DropSet {
      * Generate randomly selected drops and their accompanying objectives,
      * experience orbs and sound effects.
      * 
-     * @param trigger a description of the event that triggered the drop, for
-     *        logging.
+     * The experience of all generated drops, and any experience already added
+     * to the results, is dropped as a single orb.
+     * 
+     * @param trigger the event that triggered the drop, for logging.
      * @param player the player that triggered the drop, or null.
      * @param loc the Location where items will be dropped.
      * @param allowRestricted if true, restricted drops are allowed; otherwise
      *        they are removed.
      */
-    public void generateRandomDrops(DropResults results, String trigger, Player player, Location loc, boolean allowRestricted) {
+    public void generateRandomDrops(DropResults results, DropTrigger trigger, Player player, Location loc, boolean allowRestricted) {
         if (isSingle()) {
             chooseOneDrop(allowRestricted).generate(results, trigger, player, loc);
 
@@ -224,6 +227,21 @@ public class DropSet {
                 }
             }
         }
+
+        results.dropExperience(loc);
+    }
+
+    // ------------------------------------------------------------------------
+    /**
+     * Resolve the item and mob type IDs of all drops.
+     *
+     * @see nu.nerd.beastmaster.ILinkable#link(java.util.logging.Logger)
+     */
+    @Override
+    public void link(Logger logger) {
+        for (Drop drop : _drops.values()) {
+            drop.link(this, logger);
+        }
     }
 
     // ------------------------------------------------------------------------
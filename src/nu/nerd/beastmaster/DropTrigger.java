@@ -0,0 +1,90 @@
+package nu.nerd.beastmaster;
+
+import org.bukkit.entity.Player;
+
+// ----------------------------------------------------------------------------
+/**
+ * Describes the event that triggered a drop, as an actor, a verb and a
+ * subject, e.g. "totemo killed zombie".
+ *
+ * The parts are kept as references to existing objects and only formatted as
+ * a string by {@link #toString()}, when a logged {@link Drop} needs it.
+ */
+public class DropTrigger {
+    // ------------------------------------------------------------------------
+    /**
+     * Constructor.
+     *
+     * @param actor   the Player or other object that caused the event, or null
+     *                for the environment.
+     * @param verb    what the actor did.
+     * @param subject the object that the actor acted upon.
+     */
+    public DropTrigger(Object actor, String verb, Object subject) {
+        _actor = actor;
+        _verb = verb;
+        _subject = subject;
+    }
+
+    // ------------------------------------------------------------------------
+    /**
+     * Return the Player or other object that caused the event, or null for the
+     * environment.
+     *
+     * @return the actor.
+     */
+    public Object getActor() {
+        return _actor;
+    }
+
+    // ------------------------------------------------------------------------
+    /**
+     * Return what the actor did.
+     *
+     * @return the verb.
+     */
+    public String getVerb() {
+        return _verb;
+    }
+
+    // ------------------------------------------------------------------------
+    /**
+     * Return the object that the actor acted upon.
+     *
+     * @return the subject.
+     */
+    public Object getSubject() {
+        return _subject;
+    }
+
+    // ------------------------------------------------------------------------
+    /**
+     * Format this trigger for logging.
+     *
+     * @return the description of the event.
+     */
+    @Override
+    public String toString() {
+        String actor = (_actor instanceof Player) ? ((Player) _actor).getName()
+                                                  : (_actor != null) ? _actor.toString() : "<environment>";
+        return actor + " " + _verb + " " + _subject;
+    }
+
+    // ------------------------------------------------------------------------
+    /**
+     * The Player or other object that caused the event, or null for the
+     * environment.
+     */
+    protected Object _actor;
+
+    /**
+     * What the actor did.
+     */
+    protected String _verb;
+
+    /**
+     * The object that the actor acted upon.
+     */
+    protected Object _subject;
+
+} // class DropTrigger
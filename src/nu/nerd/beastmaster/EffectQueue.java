@@ -0,0 +1,277 @@
+package nu.nerd.beastmaster;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import org.bukkit.Bukkit;
+import org.bukkit.Location;
+import org.bukkit.entity.Entity;
+import org.bukkit.scheduler.BukkitTask;
+
+import nu.nerd.beastmaster.mobs.MobType;
+
+// ----------------------------------------------------------------------------
+/**
+ * Runs sound effects and mob teleports a few ticks after they are requested.
+ *
+ * Effects are stored in a ring of per-tick buckets, each a set of
+ * preallocated parallel arrays, and run by a single repeating task, rather
+ * than each effect scheduling its own task. The task runs only while effects
+ * are queued.
+ *
+ * A sound queued for a tick is dropped if the same sound is already queued
+ * at the same block, in the same world, in that tick.
+ */
+public class EffectQueue {
+    // ------------------------------------------------------------------------
+    /**
+     * Constructor.
+     */
+    @SuppressWarnings("unchecked")
+    public EffectQueue() {
+        _kinds = new byte[RING_SIZE][INITIAL_CAPACITY];
+        _targets = new Object[RING_SIZE][INITIAL_CAPACITY];
+        _locations = new Location[RING_SIZE][INITIAL_CAPACITY];
+        _mobTypes = new MobType[RING_SIZE][INITIAL_CAPACITY];
+        _counts = new int[RING_SIZE];
+        _soundKeys = new LongObjectMap[RING_SIZE];
+        for (int i = 0; i < RING_SIZE; ++i) {
+            _soundKeys[i] = new LongObjectMap<>();
+        }
+    }
+
+    // ------------------------------------------------------------------------
+    /**
+     * Play a sound after the specified delay.
+     *
+     * @param sound the sound; if null, nothing is queued.
+     * @param loc   the location of the sound.
+     * @param delay the delay in ticks, from 1 to {@link #MAX_DELAY}.
+     */
+    public void playSound(SoundEffect sound, Location loc, int delay) {
+        if (sound == null) {
+            return;
+        }
+
+        int bucket = bucketOf(delay);
+        long blockKey = Util.blockKey(loc.getBlockX(), loc.getBlockY(), loc.getBlockZ());
+        LongObjectMap<ArrayList<Integer>> soundKeys = _soundKeys[bucket];
+        ArrayList<Integer> positions = soundKeys.get(blockKey);
+        if (positions == null) {
+            positions = new ArrayList<>(2);
+            soundKeys.put(blockKey, positions);
+        } else {
+            for (int i : positions) {
+                if (_targets[bucket][i] == sound && _locations[bucket][i].getWorld() == loc.getWorld()) {
+                    return;
+                }
+            }
+        }
+        positions.add(_counts[bucket]);
+        add(bucket, KIND_SOUND, sound, loc, null);
+    }
+
+    // ------------------------------------------------------------------------
+    /**
+     * Teleport a mob after the specified delay, and show the teleport effects
+     * of its mob type.
+     *
+     * @param entity      the mob.
+     * @param destination the destination.
+     * @param mobType     the mob's type, or null.
+     * @param delay       the delay in ticks, from 1 to {@link #MAX_DELAY}.
+     */
+    public void teleport(Entity entity, Location destination, MobType mobType, int delay) {
+        add(bucketOf(delay), KIND_TELEPORT, entity, destination, mobType);
+    }
+
+    // ------------------------------------------------------------------------
+    /**
+     * Discard all queued effects.
+     *
+     * This is called when the plugin is disabled.
+     */
+    public void clear() {
+        for (int bucket = 0; bucket < RING_SIZE; ++bucket) {
+            clearBucket(bucket);
+        }
+        _total = 0;
+        if (_task != null) {
+            _task.cancel();
+            _task = null;
+        }
+    }
+
+    // ------------------------------------------------------------------------
+    /**
+     * Return the index of the bucket of effects that run after the specified
+     * delay.
+     *
+     * @param delay the delay in ticks.
+     * @return the bucket index.
+     * @throws IllegalArgumentException if the delay is out of range.
+     */
+    protected int bucketOf(int delay) {
+        if (delay < 1 || delay > MAX_DELAY) {
+            throw new IllegalArgumentException("delay out of range: " + delay);
+        }
+        return (int) ((_tick + delay) & (RING_SIZE - 1));
+    }
+
+    // ------------------------------------------------------------------------
+    /**
+     * Append an effect to a bucket, and start the task if necessary.
+     *
+     * @param bucket   the bucket index.
+     * @param kind     the kind of effect.
+     * @param target   the SoundEffect or Entity.
+     * @param loc      the location of the sound, or teleport destination.
+     * @param mobType  the mob type of a teleported mob, or null.
+     */
+    protected void add(int bucket, byte kind, Object target, Location loc, MobType mobType) {
+        int i = _counts[bucket];
+        if (i == _kinds[bucket].length) {
+            int capacity = 2 * i;
+            _kinds[bucket] = Arrays.copyOf(_kinds[bucket], capacity);
+            _targets[bucket] = Arrays.copyOf(_targets[bucket], capacity);
+            _locations[bucket] = Arrays.copyOf(_locations[bucket], capacity);
+            _mobTypes[bucket] = Arrays.copyOf(_mobTypes[bucket], capacity);
+        }
+        _kinds[bucket][i] = kind;
+        _targets[bucket][i] = target;
+        _locations[bucket][i] = loc;
+        _mobTypes[bucket][i] = mobType;
+        _counts[bucket] = i + 1;
+        ++_total;
+
+        if (_task == null) {
+            _task = Bukkit.getScheduler().runTaskTimer(BeastMaster.PLUGIN, this::tick, 1, 1);
+        }
+    }
+
+    // ------------------------------------------------------------------------
+    /**
+     * Run the effects due this tick, and stop the task when no effects remain.
+     */
+    protected void tick() {
+        ++_tick;
+        int bucket = (int) (_tick & (RING_SIZE - 1));
+        int count = _counts[bucket];
+        byte[] kinds = _kinds[bucket];
+        Object[] targets = _targets[bucket];
+        Location[] locations = _locations[bucket];
+        MobType[] mobTypes = _mobTypes[bucket];
+
+        // Effects run now may queue further effects, in later buckets.
+        for (int i = 0; i < count; ++i) {
+            if (kinds[i] == KIND_SOUND) {
+                ((SoundEffect) targets[i]).play(locations[i]);
+            } else {
+                Entity entity = (Entity) targets[i];
+                if (entity.isValid()) {
+                    entity.teleport(locations[i]);
+                    Util.doTeleportEffects(mobTypes[i], locations[i]);
+                }
+            }
+        }
+        _total -= count;
+        clearBucket(bucket);
+
+        if (_total == 0 && _task != null) {
+            _task.cancel();
+            _task = null;
+        }
+    }
+
+    // ------------------------------------------------------------------------
+    /**
+     * Remove all effects from a bucket, releasing references to them.
+     *
+     * @param bucket the bucket index.
+     */
+    protected void clearBucket(int bucket) {
+        int count = _counts[bucket];
+        Arrays.fill(_targets[bucket], 0, count, null);
+        Arrays.fill(_locations[bucket], 0, count, null);
+        Arrays.fill(_mobTypes[bucket], 0, count, null);
+        _counts[bucket] = 0;
+        if (!_soundKeys[bucket].isEmpty()) {
+            _soundKeys[bucket].clear();
+        }
+    }
+
+    // ------------------------------------------------------------------------
+    /**
+     * Number of buckets in the ring; a power of 2.
+     */
+    protected static final int RING_SIZE = 4;
+
+    /**
+     * The maximum delay of an effect in ticks.
+     */
+    public static final int MAX_DELAY = RING_SIZE - 1;
+
+    /**
+     * Initial capacity of each bucket.
+     */
+    protected static final int INITIAL_CAPACITY = 32;
+
+    /**
+     * Kind of effect: play a SoundEffect.
+     */
+    protected static final byte KIND_SOUND = 0;
+
+    /**
+     * Kind of effect: teleport an Entity.
+     */
+    protected static final byte KIND_TELEPORT = 1;
+
+    /**
+     * Kinds of effects, indexed by bucket and then position in the bucket.
+     */
+    protected byte[][] _kinds;
+
+    /**
+     * The SoundEffect or Entity of each effect.
+     */
+    protected Object[][] _targets;
+
+    /**
+     * The sound location or teleport destination of each effect.
+     */
+    protected Location[][] _locations;
+
+    /**
+     * The mob type of each teleported mob, or null.
+     */
+    protected MobType[][] _mobTypes;
+
+    /**
+     * The number of effects in each bucket.
+     */
+    protected int[] _counts;
+
+    /**
+     * Per bucket, map from packed block coordinates to the positions of the
+     * sounds queued at that block, in any world, used to drop duplicate
+     * sounds.
+     */
+    protected LongObjectMap<ArrayList<Integer>>[] _soundKeys;
+
+    /**
+     * The total number of queued effects.
+     */
+    protected int _total;
+
+    /**
+     * The number of ticks that the task has run; effects with delay d queued
+     * now run when this reaches the current value plus d.
+     */
+    protected long _tick;
+
+    /**
+     * The repeating task that runs queued effects, or null if not running.
+     */
+    protected BukkitTask _task;
+
+} // class EffectQueue
@@ -0,0 +1,362 @@
+package nu.nerd.beastmaster;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Collections;
+import java.util.Set;
+import java.util.UUID;
+import java.util.WeakHashMap;
+import java.util.logging.Logger;
+
+import org.bukkit.NamespacedKey;
+import org.bukkit.configuration.InvalidConfigurationException;
+import org.bukkit.configuration.file.YamlConfiguration;
+import org.bukkit.entity.Entity;
+import org.bukkit.event.entity.CreatureSpawnEvent.SpawnReason;
+import org.bukkit.persistence.PersistentDataContainer;
+import org.bukkit.persistence.PersistentDataType;
+
+import nu.nerd.entitymeta.EntityMeta;
+
+// ----------------------------------------------------------------------------
+/**
+ * Stores per-entity state of this plugin in the entity's
+ * PersistentDataContainer.
+ *
+ * Values use compact encodings: mob type IDs and spawn reasons are interned
+ * as small integers by {@link IdTable}s, which are saved in the plugin's data
+ * folder, and numbers are stored as primitives.
+ *
+ * If the ID tables cannot be read, no new IDs are assigned and the file is
+ * left untouched, so that it can be repaired by hand. Mob type IDs that cannot
+ * be interned are stored as strings instead.
+ *
+ * Entities that were tagged through the EntityMeta plugin by earlier versions
+ * are migrated when their mob type is looked up. Entities without EntityMeta
+ * data are not marked, so they are checked again each time they are loaded,
+ * but only once while they stay loaded.
+ */
+public class EntityData {
+    // ------------------------------------------------------------------------
+    /**
+     * Create the metadata keys and load the ID tables.
+     *
+     * This must be called when the plugin is enabled, before any metadata is
+     * accessed.
+     *
+     * @param file   the file containing the ID tables.
+     * @param logger the logger.
+     */
+    public void load(File file, Logger logger) {
+        _file = file;
+        _mobTypeKey = new NamespacedKey(BeastMaster.PLUGIN, "mob-type");
+        _spawnReasonKey = new NamespacedKey(BeastMaster.PLUGIN, "spawn-reason");
+        _supportHealthKey = new NamespacedKey(BeastMaster.PLUGIN, "support-health");
+        _damagePlayerKey = new NamespacedKey(BeastMaster.PLUGIN, "damage-player");
+        _damageTimeKey = new NamespacedKey(BeastMaster.PLUGIN, "damage-time");
+        _mobTypeNameKey = new NamespacedKey(BeastMaster.PLUGIN, "mob-type-name");
+        _migratedKey = new NamespacedKey(BeastMaster.PLUGIN, "migrated");
+
+        YamlConfiguration config = new YamlConfiguration();
+        if (file.isFile()) {
+            try {
+                config.load(file);
+            } catch (IOException | InvalidConfigurationException ex) {
+                logger.severe("Error loading entity data IDs; no new IDs will be assigned until " +
+                              file + " is repaired: " + ex.getMessage());
+                _idsUnavailable = true;
+                return;
+            }
+        }
+        _mobTypeIds.load(config.getConfigurationSection("mob-types"));
+        _spawnReasonIds.load(config.getConfigurationSection("spawn-reasons"));
+    }
+
+    // ------------------------------------------------------------------------
+    /**
+     * Save the ID tables, if they have changed.
+     *
+     * The tables are written to a temporary file that then replaces the
+     * original, so that a crash cannot leave a truncated file.
+     *
+     * @param logger the logger.
+     */
+    public void save(Logger logger) {
+        if (_idsUnavailable || (!_mobTypeIds.isDirty() && !_spawnReasonIds.isDirty())) {
+            return;
+        }
+
+        YamlConfiguration config = new YamlConfiguration();
+        _mobTypeIds.save(config.createSection("mob-types"));
+        _spawnReasonIds.save(config.createSection("spawn-reasons"));
+        File tempFile = new File(_file.getPath() + ".tmp");
+        try {
+            config.save(tempFile);
+            try {
+                Files.move(tempFile.toPath(), _file.toPath(),
+                           StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException ex) {
+                Files.move(tempFile.toPath(), _file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException ex) {
+            logger.severe("Error saving entity data IDs: " + ex.getMessage());
+        }
+    }
+
+    // ------------------------------------------------------------------------
+    /**
+     * Return the ID of the mob type of an entity.
+     *
+     * @param entity the entity.
+     * @return the lower case mob type ID, or null if not set.
+     */
+    public String getMobTypeId(Entity entity) {
+        PersistentDataContainer data = entity.getPersistentDataContainer();
+        Short id = data.get(_mobTypeKey, PersistentDataType.SHORT);
+        if (id == null && !data.has(_migratedKey, PersistentDataType.BYTE) && _migrationChecked.add(entity)) {
+            migrate(entity);
+            id = data.get(_mobTypeKey, PersistentDataType.SHORT);
+        }
+        String name = (id != null) ? _mobTypeIds.getName(id) : null;
+        return (name != null) ? name : data.get(_mobTypeNameKey, PersistentDataType.STRING);
+    }
+
+    // ------------------------------------------------------------------------
+    /**
+     * Set the ID of the mob type of an entity.
+     *
+     * If the ID cannot be interned, it is stored as a string.
+     *
+     * @param entity    the entity.
+     * @param mobTypeId the mob type ID.
+     */
+    public void setMobTypeId(Entity entity, String mobTypeId) {
+        PersistentDataContainer data = entity.getPersistentDataContainer();
+        String name = mobTypeId.toLowerCase();
+        int id = intern(_mobTypeIds, name);
+        if (id != 0) {
+            data.set(_mobTypeKey, PersistentDataType.SHORT, (short) id);
+            data.remove(_mobTypeNameKey);
+        } else {
+            data.remove(_mobTypeKey);
+            data.set(_mobTypeNameKey, PersistentDataType.STRING, name);
+        }
+    }
+
+    // ------------------------------------------------------------------------
+    /**
+     * Return the reason why an entity spawned.
+     *
+     * @param entity the entity.
+     * @return the spawn reason, or null if not recorded.
+     */
+    public SpawnReason getSpawnReason(Entity entity) {
+        Byte id = entity.getPersistentDataContainer().get(_spawnReasonKey, PersistentDataType.BYTE);
+        String name = (id != null) ? _spawnReasonIds.getName(id & 0xFF) : null;
+        try {
+            return (name != null) ? SpawnReason.valueOf(name) : null;
+        } catch (IllegalArgumentException ex) {
+            return null;
+        }
+    }
+
+    // ------------------------------------------------------------------------
+    /**
+     * Record the reason why an entity spawned.
+     *
+     * @param entity the entity.
+     * @param reason the spawn reason.
+     */
+    public void setSpawnReason(Entity entity, SpawnReason reason) {
+        int id = intern(_spawnReasonIds, reason.name());
+        if (id != 0) {
+            entity.getPersistentDataContainer().set(_spawnReasonKey, PersistentDataType.BYTE, (byte) id);
+        }
+    }
+
+    // ------------------------------------------------------------------------
+    /**
+     * Return the health of a mob when it last summoned support mobs.
+     *
+     * @param entity the mob.
+     * @return the health, or null if it has not summoned support mobs.
+     */
+    public Double getSupportHealth(Entity entity) {
+        return entity.getPersistentDataContainer().get(_supportHealthKey, PersistentDataType.DOUBLE);
+    }
+
+    // ------------------------------------------------------------------------
+    /**
+     * Record the health of a mob when it summoned support mobs.
+     *
+     * @param entity the mob.
+     * @param health the health.
+     */
+    public void setSupportHealth(Entity entity, double health) {
+        entity.getPersistentDataContainer().set(_supportHealthKey, PersistentDataType.DOUBLE, health);
+    }
+
+    // ------------------------------------------------------------------------
+    /**
+     * Return the UUID of the player who last damaged a mob, as recorded by
+     * {@link #setPlayerDamage(Entity, UUID, long)}.
+     *
+     * @param entity the mob.
+     * @return the player's UUID, or null if not recorded.
+     */
+    public UUID getDamagePlayer(Entity entity) {
+        long[] bits = entity.getPersistentDataContainer().get(_damagePlayerKey, PersistentDataType.LONG_ARRAY);
+        return (bits != null && bits.length == 2) ? new UUID(bits[0], bits[1]) : null;
+    }
+
+    // ------------------------------------------------------------------------
+    /**
+     * Return the full world time when a player last damaged a mob, as
+     * recorded by {@link #setPlayerDamage(Entity, UUID, long)}.
+     *
+     * @param entity the mob.
+     * @return the full world time, or null if not recorded.
+     */
+    public Long getDamageTime(Entity entity) {
+        return entity.getPersistentDataContainer().get(_damageTimeKey, PersistentDataType.LONG);
+    }
+
+    // ------------------------------------------------------------------------
+    /**
+     * Record the player who last damaged a mob, and when.
+     *
+     * @param entity   the mob.
+     * @param playerId the UUID of the player.
+     * @param time     the full world time of the damage.
+     */
+    public void setPlayerDamage(Entity entity, UUID playerId, long time) {
+        PersistentDataContainer data = entity.getPersistentDataContainer();
+        data.set(_damagePlayerKey, PersistentDataType.LONG_ARRAY,
+                 new long[] { playerId.getMostSignificantBits(), playerId.getLeastSignificantBits() });
+        data.set(_damageTimeKey, PersistentDataType.LONG, time);
+    }
+
+    // ------------------------------------------------------------------------
+    /**
+     * Return the ID of a string in a table, assigning and saving a new one if
+     * necessary.
+     *
+     * @param table the table.
+     * @param name  the string.
+     * @return the ID, or 0 if the table is full or the tables could not be
+     *         loaded.
+     */
+    protected int intern(IdTable table, String name) {
+        if (_idsUnavailable) {
+            return 0;
+        }
+        int id = table.intern(name);
+        if (table.isDirty()) {
+            save(BeastMaster.PLUGIN.getLogger());
+        }
+        return id;
+    }
+
+    // ------------------------------------------------------------------------
+    /**
+     * Copy an entity's metadata from the EntityMeta plugin, where earlier
+     * versions stored it, and mark the entity as migrated if there was any.
+     *
+     * Damage attribution is not migrated, since it expires within seconds.
+     *
+     * @param entity the entity.
+     */
+    protected void migrate(Entity entity) {
+        String mobTypeId = (String) EntityMeta.api().get(entity, BeastMaster.PLUGIN, "mob-type");
+        if (mobTypeId != null) {
+            setMobTypeId(entity, mobTypeId);
+        }
+
+        String spawnReason = (String) EntityMeta.api().get(entity, BeastMaster.PLUGIN, "spawn-reason");
+        if (spawnReason != null) {
+            try {
+                setSpawnReason(entity, SpawnReason.valueOf(spawnReason));
+            } catch (IllegalArgumentException ex) {
+                // Spawn reason removed from the API. Drop it.
+            }
+        }
+
+        Double supportHealth = (Double) EntityMeta.api().get(entity, BeastMaster.PLUGIN, "support-health");
+        if (supportHealth != null) {
+            setSupportHealth(entity, supportHealth);
+        }
+
+        if (mobTypeId != null || spawnReason != null || supportHealth != null) {
+            entity.getPersistentDataContainer().set(_migratedKey, PersistentDataType.BYTE, (byte) 1);
+        }
+    }
+
+    // ------------------------------------------------------------------------
+    /**
+     * The file containing the ID tables.
+     */
+    protected File _file;
+
+    /**
+     * True if the ID tables could not be loaded, in which case no IDs are
+     * assigned and the file is not overwritten.
+     */
+    protected boolean _idsUnavailable;
+
+    /**
+     * Interned mob type IDs, stored as shorts.
+     */
+    protected IdTable _mobTypeIds = new IdTable(Short.MAX_VALUE);
+
+    /**
+     * Interned spawn reason names, stored as unsigned bytes.
+     */
+    protected IdTable _spawnReasonIds = new IdTable(255);
+
+    /**
+     * Key of the interned mob type ID.
+     */
+    protected NamespacedKey _mobTypeKey;
+
+    /**
+     * Key of the mob type ID as a string, used when it cannot be interned.
+     */
+    protected NamespacedKey _mobTypeNameKey;
+
+    /**
+     * Key of the interned spawn reason.
+     */
+    protected NamespacedKey _spawnReasonKey;
+
+    /**
+     * Key of the mob health when support mobs were last summoned.
+     */
+    protected NamespacedKey _supportHealthKey;
+
+    /**
+     * Key of the UUID of the player who last damaged the mob, as two longs.
+     */
+    protected NamespacedKey _damagePlayerKey;
+
+    /**
+     * Key of the full world time when a player last damaged the mob.
+     */
+    protected NamespacedKey _damageTimeKey;
+
+    /**
+     * Key of the flag set on entities that have been migrated from EntityMeta.
+     */
+    protected NamespacedKey _migratedKey;
+
+    /**
+     * Entities that have been checked for EntityMeta data while loaded.
+     *
+     * Weak keys let unloaded and dead entities be forgotten. An entity that is
+     * loaded again is a new object, and is checked again.
+     */
+    protected Set<Entity> _migrationChecked = Collections.newSetFromMap(new WeakHashMap<>());
+
+} // class EntityData
@@ -0,0 +1,30 @@
+package nu.nerd.beastmaster;
+
+import java.util.logging.Logger;
+
+// ----------------------------------------------------------------------------
+/**
+ * Implemented by configured objects that refer to other configured objects
+ * (loot tables, items, mob types, potion sets) by string ID.
+ *
+ * The IDs are resolved to direct object references in a link phase, run by the
+ * {@link LinkManager} after the configuration is loaded and after it is edited,
+ * so that event handlers can follow references without repeated
+ * case-insensitive lookups.
+ */
+public interface ILinkable {
+    // ------------------------------------------------------------------------
+    /**
+     * Resolve all string ID references held by this object into direct object
+     * references.
+     *
+     * Implementations must register every referenced ID, whether resolved or
+     * not, with {@link LinkManager#addDependency(ILinkable, String)}, so that
+     * this object is linked again when that ID is redefined. References that
+     * cannot be resolved should be logged as warnings.
+     *
+     * @param logger the logger.
+     */
+    public void link(Logger logger);
+
+} // class ILinkable
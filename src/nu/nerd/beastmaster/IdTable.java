@@ -0,0 +1,164 @@
+package nu.nerd.beastmaster;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+
+import org.bukkit.configuration.ConfigurationSection;
+
+// ----------------------------------------------------------------------------
+/**
+ * A persistent table that interns strings as small integer IDs.
+ *
+ * IDs are assigned in sequence from 1 and never reassigned, so they can be
+ * stored compactly in place of the strings, e.g. in entity metadata, and
+ * remain valid across restarts as long as the table is saved.
+ */
+public class IdTable {
+    // ------------------------------------------------------------------------
+    /**
+     * Constructor.
+     *
+     * @param maxId the largest ID that can be assigned.
+     */
+    public IdTable(int maxId) {
+        _maxId = maxId;
+        clear();
+    }
+
+    // ------------------------------------------------------------------------
+    /**
+     * Return the ID of a string, assigning a new ID if it has none.
+     *
+     * @param name the string.
+     * @return the ID, or 0 if the table is full.
+     */
+    public int intern(String name) {
+        Integer id = _ids.get(name);
+        if (id != null) {
+            return id;
+        }
+
+        int newId = _names.size();
+        if (newId > _maxId) {
+            return 0;
+        }
+        _names.add(name);
+        _ids.put(name, newId);
+        _dirty = true;
+        return newId;
+    }
+
+    // ------------------------------------------------------------------------
+    /**
+     * Return the ID of a string, without assigning one.
+     *
+     * @param name the string.
+     * @return the ID, or 0 if the string has no ID.
+     */
+    public int getId(String name) {
+        Integer id = _ids.get(name);
+        return (id != null) ? id : 0;
+    }
+
+    // ------------------------------------------------------------------------
+    /**
+     * Return the string with the specified ID.
+     *
+     * @param id the ID.
+     * @return the string, or null if the ID is not assigned.
+     */
+    public String getName(int id) {
+        return (id > 0 && id < _names.size()) ? _names.get(id) : null;
+    }
+
+    // ------------------------------------------------------------------------
+    /**
+     * Return true if IDs have been assigned since the table was last loaded
+     * or saved.
+     *
+     * @return true if the table needs to be saved.
+     */
+    public boolean isDirty() {
+        return _dirty;
+    }
+
+    // ------------------------------------------------------------------------
+    /**
+     * Remove all IDs.
+     */
+    public void clear() {
+        _names.clear();
+        _ids.clear();
+        // ID 0 is never assigned.
+        _names.add(null);
+        _dirty = false;
+    }
+
+    // ------------------------------------------------------------------------
+    /**
+     * Replace the contents of this table with those of a configuration
+     * section that maps strings to IDs.
+     *
+     * @param section the section, or null to clear the table.
+     */
+    public void load(ConfigurationSection section) {
+        clear();
+        if (section == null) {
+            return;
+        }
+
+        for (String name : section.getKeys(false)) {
+            int id = section.getInt(name);
+            if (id <= 0 || id > _maxId) {
+                continue;
+            }
+            while (_names.size() <= id) {
+                _names.add(null);
+            }
+            _names.set(id, name);
+            _ids.put(name, id);
+        }
+
+        // Unused slots left by gaps are not reassigned, so that IDs stay
+        // unambiguous.
+        _dirty = false;
+    }
+
+    // ------------------------------------------------------------------------
+    /**
+     * Save this table to a configuration section, mapping strings to IDs.
+     *
+     * @param section the section.
+     */
+    public void save(ConfigurationSection section) {
+        for (int id = 1; id < _names.size(); ++id) {
+            String name = _names.get(id);
+            if (name != null) {
+                section.set(name, id);
+            }
+        }
+        _dirty = false;
+    }
+
+    // ------------------------------------------------------------------------
+    /**
+     * The largest ID that can be assigned.
+     */
+    protected int _maxId;
+
+    /**
+     * Strings, indexed by ID; element 0 is unused.
+     */
+    protected ArrayList<String> _names = new ArrayList<>();
+
+    /**
+     * Map from string to ID.
+     */
+    protected HashMap<String, Integer> _ids = new HashMap<>();
+
+    /**
+     * True if IDs have been assigned since the table was last loaded or saved.
+     */
+    protected boolean _dirty;
+
+} // class IdTable
@@ -0,0 +1,141 @@
+package nu.nerd.beastmaster;
+
+import java.util.ArrayList;
+
+import org.bukkit.Location;
+import org.bukkit.entity.Player;
+import org.bukkit.inventory.ItemStack;
+
+// ----------------------------------------------------------------------------
+/**
+ * A batch of ItemStacks queued by the {@link DropQueue} to be dropped in the
+ * same block, with the same dropped item entity attributes.
+ *
+ * Similar ItemStacks are merged, up to their maximum stack size, so that the
+ * batch spawns the minimum number of item entities.
+ */
+public class ItemDropBatch {
+    // ------------------------------------------------------------------------
+    /**
+     * Constructor.
+     *
+     * @param loc          the location of the first drop in the batch.
+     * @param invulnerable whether dropped items are invulnerable.
+     * @param glowing      whether dropped items glow.
+     */
+    public ItemDropBatch(Location loc, boolean invulnerable, boolean glowing) {
+        _loc = loc;
+        _invulnerable = invulnerable;
+        _glowing = glowing;
+    }
+
+    // ------------------------------------------------------------------------
+    /**
+     * Return true if dropped items in this batch have the specified
+     * attributes.
+     *
+     * @param invulnerable whether dropped items are invulnerable.
+     * @param glowing      whether dropped items glow.
+     * @return true if dropped items in this batch have the specified
+     *         attributes.
+     */
+    public boolean hasAttributes(boolean invulnerable, boolean glowing) {
+        return _invulnerable == invulnerable && _glowing == glowing;
+    }
+
+    // ------------------------------------------------------------------------
+    /**
+     * Return the location of the first drop in the batch.
+     *
+     * @return the location of the first drop in the batch.
+     */
+    public Location getLocation() {
+        return _loc;
+    }
+
+    // ------------------------------------------------------------------------
+    /**
+     * Return the player associated with the drops, or null if none.
+     *
+     * @return the player associated with the drops, or null if none.
+     */
+    public Player getPlayer() {
+        return _player;
+    }
+
+    // ------------------------------------------------------------------------
+    /**
+     * Add an ItemStack to the batch, merging it into similar ItemStacks that
+     * are not yet full.
+     *
+     * @param player    the player associated with the drop, or null. The first
+     *                  non-null player is retained.
+     * @param itemStack the ItemStack; it is not modified.
+     */
+    public void add(Player player, ItemStack itemStack) {
+        if (_player == null) {
+            _player = player;
+        }
+
+        int remaining = itemStack.getAmount();
+        for (ItemStack stack : _stacks) {
+            if (remaining <= 0) {
+                break;
+            }
+            int space = stack.getMaxStackSize() - stack.getAmount();
+            if (space > 0 && stack.isSimilar(itemStack)) {
+                int moved = Math.min(space, remaining);
+                stack.setAmount(stack.getAmount() + moved);
+                remaining -= moved;
+            }
+        }
+
+        if (remaining > 0) {
+            ItemStack stack = itemStack.clone();
+            stack.setAmount(remaining);
+            _stacks.add(stack);
+        }
+    }
+
+    // ------------------------------------------------------------------------
+    /**
+     * Spawn all dropped items in the batch.
+     *
+     * @param loc the location to drop the items, which may differ from
+     *            {@link #getLocation()} if that location is obstructed.
+     */
+    public void drop(Location loc) {
+        for (ItemStack stack : _stacks) {
+            org.bukkit.entity.Item item = loc.getWorld().dropItem(loc, stack);
+            item.setInvulnerable(_invulnerable);
+            item.setGlowing(_glowing);
+        }
+    }
+
+    // ------------------------------------------------------------------------
+    /**
+     * The location of the first drop in the batch.
+     */
+    protected Location _loc;
+
+    /**
+     * The first non-null player associated with a drop in the batch.
+     */
+    protected Player _player;
+
+    /**
+     * True if dropped items are invulnerable.
+     */
+    protected boolean _invulnerable;
+
+    /**
+     * True if dropped items glow.
+     */
+    protected boolean _glowing;
+
+    /**
+     * The merged ItemStacks to drop.
+     */
+    protected ArrayList<ItemStack> _stacks = new ArrayList<>();
+
+} // class ItemDropBatch
@@ -81,6 +81,7 @@ public class ItemManager {
         }
 
         _items.put(id.toLowerCase(), new Item(id, itemStack, false));
+        BeastMaster.LINKS.redefined(id);
     }
 
     // ------------------------------------------------------------------------
@@ -91,7 +92,9 @@ public class ItemManager {
      * @return the Item, or null if not found.
      */
     public Item removeItem(String id) {
-        return _items.remove(id.toLowerCase());
+        Item item = _items.remove(id.toLowerCase());
+        BeastMaster.LINKS.redefined(id);
+        return item;
     }
 
     // ------------------------------------------------------------------------
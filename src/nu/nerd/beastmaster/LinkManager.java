@@ -0,0 +1,169 @@
+package nu.nerd.beastmaster;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.logging.Logger;
+
+import nu.nerd.beastmaster.mobs.MobType;
+import nu.nerd.beastmaster.zones.Zone;
+
+// ----------------------------------------------------------------------------
+/**
+ * Manages the link phase, where string ID references between configured
+ * objects are resolved to direct object references.
+ *
+ * All objects are linked after the configuration is loaded. Thereafter, edits
+ * mark objects dirty, either directly (an object's own references changed) or
+ * indirectly (an object that it refers to by ID was added, removed or
+ * replaced). Dirty objects are linked again by {@link #relink(Logger)}, which is
+ * called whenever the configuration is saved after an edit.
+ *
+ * IDs are compared case-insensitively. Loot tables, items and mob types are
+ * tracked in a single ID namespace, which may occasionally relink an object
+ * unnecessarily, but never fails to relink one that needs it.
+ */
+public class LinkManager {
+    // ------------------------------------------------------------------------
+    /**
+     * Link all loot tables, mob types and zones, discarding all previous
+     * dependency information.
+     *
+     * @param logger the logger, used to warn about dangling references.
+     */
+    public void linkAll(Logger logger) {
+        _dependants.clear();
+        _dependencies.clear();
+        _dirty.clear();
+
+        for (DropSet dropSet : BeastMaster.LOOTS.getDropSets()) {
+            dropSet.link(logger);
+        }
+        for (MobType mobType : BeastMaster.MOBS.getAllMobTypes()) {
+            mobType.link(logger);
+        }
+        for (Zone zone : BeastMaster.ZONES.getZones()) {
+            zone.link(logger);
+        }
+    }
+
+    // ------------------------------------------------------------------------
+    /**
+     * Link all objects that have been marked dirty since they were last
+     * linked.
+     *
+     * @param logger the logger, used to warn about dangling references.
+     */
+    public void relink(Logger logger) {
+        if (_dirty.isEmpty()) {
+            return;
+        }
+
+        // Linking may not mark further objects dirty, but copy anyway.
+        ArrayList<ILinkable> dirty = new ArrayList<>(_dirty);
+        _dirty.clear();
+        for (ILinkable linkable : dirty) {
+            removeDependencies(linkable);
+            linkable.link(logger);
+        }
+    }
+
+    // ------------------------------------------------------------------------
+    /**
+     * Mark an object as needing to be linked again, because its own references
+     * have changed.
+     *
+     * @param linkable the object.
+     */
+    public void markDirty(ILinkable linkable) {
+        _dirty.add(linkable);
+    }
+
+    // ------------------------------------------------------------------------
+    /**
+     * Signify that the object with the specified ID has been added, removed or
+     * replaced, marking all objects that refer to that ID as dirty.
+     *
+     * @param id the case-insensitive ID.
+     */
+    public void redefined(String id) {
+        if (id == null) {
+            return;
+        }
+
+        Set<ILinkable> dependants = _dependants.get(id.toLowerCase());
+        if (dependants != null) {
+            _dirty.addAll(dependants);
+        }
+    }
+
+    // ------------------------------------------------------------------------
+    /**
+     * Forget an object that is no longer registered with its manager, so that
+     * it is not linked again.
+     *
+     * @param linkable the object.
+     */
+    public void forget(ILinkable linkable) {
+        _dirty.remove(linkable);
+        removeDependencies(linkable);
+    }
+
+    // ------------------------------------------------------------------------
+    /**
+     * Record that an object refers to the specified ID.
+     *
+     * This method is called by {@link ILinkable#link(Logger)} implementations
+     * for every referenced ID, including those that could not be resolved.
+     *
+     * @param dependant the object holding the reference.
+     * @param id        the case-insensitive referenced ID.
+     */
+    public void addDependency(ILinkable dependant, String id) {
+        String key = id.toLowerCase();
+        _dependants.computeIfAbsent(key, k -> new HashSet<>()).add(dependant);
+        _dependencies.computeIfAbsent(dependant, k -> new HashSet<>()).add(key);
+    }
+
+    // ------------------------------------------------------------------------
+    /**
+     * Remove all dependencies recorded for the specified object.
+     *
+     * @param dependant the object holding references.
+     */
+    protected void removeDependencies(ILinkable dependant) {
+        Set<String> keys = _dependencies.remove(dependant);
+        if (keys != null) {
+            for (String key : keys) {
+                Set<ILinkable> dependants = _dependants.get(key);
+                if (dependants != null) {
+                    dependants.remove(dependant);
+                    if (dependants.isEmpty()) {
+                        _dependants.remove(key);
+                    }
+                }
+            }
+        }
+    }
+
+    // ------------------------------------------------------------------------
+    /**
+     * Map from lower case referenced ID to the set of objects that refer to
+     * it.
+     */
+    protected HashMap<String, Set<ILinkable>> _dependants = new HashMap<>();
+
+    /**
+     * Map from object to the set of lower case IDs it refers to; the inverse
+     * of {@link #_dependants}.
+     */
+    protected HashMap<ILinkable, Set<String>> _dependencies = new HashMap<>();
+
+    /**
+     * Objects that need to be linked again, in the order they were marked.
+     */
+    protected LinkedHashSet<ILinkable> _dirty = new LinkedHashSet<>();
+
+} // class LinkManager
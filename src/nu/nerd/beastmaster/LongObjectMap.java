@@ -0,0 +1,202 @@
+package nu.nerd.beastmaster;
+
+import java.util.Arrays;
+
+// ----------------------------------------------------------------------------
+/**
+ * A hash map from primitive long keys to non-null object values.
+ *
+ * Entries are stored in parallel arrays using open addressing with linear
+ * probing, so lookups neither box the key nor allocate. Removal shifts later
+ * entries of the probe sequence back, rather than leaving tombstones.
+ */
+public class LongObjectMap<V> {
+    // ------------------------------------------------------------------------
+    /**
+     * Default constructor.
+     */
+    public LongObjectMap() {
+        this(16);
+    }
+
+    // ------------------------------------------------------------------------
+    /**
+     * Constructor.
+     *
+     * @param capacity the initial capacity, which is rounded up to a power of
+     *                 2.
+     */
+    public LongObjectMap(int capacity) {
+        int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        _keys = new long[size];
+        _values = new Object[size];
+    }
+
+    // ------------------------------------------------------------------------
+    /**
+     * Return the number of entries.
+     *
+     * @return the number of entries.
+     */
+    public int size() {
+        return _size;
+    }
+
+    // ------------------------------------------------------------------------
+    /**
+     * Return true if there are no entries.
+     *
+     * @return true if there are no entries.
+     */
+    public boolean isEmpty() {
+        return _size == 0;
+    }
+
+    // ------------------------------------------------------------------------
+    /**
+     * Return the value for the specified key, or null if not present.
+     *
+     * @param key the key.
+     * @return the value, or null if not present.
+     */
+    @SuppressWarnings("unchecked")
+    public V get(long key) {
+        int mask = _keys.length - 1;
+        for (int i = slot(key); _values[i] != null; i = (i + 1) & mask) {
+            if (_keys[i] == key) {
+                return (V) _values[i];
+            }
+        }
+        return null;
+    }
+
+    // ------------------------------------------------------------------------
+    /**
+     * Set the value for the specified key.
+     *
+     * @param key   the key.
+     * @param value the value; must not be null.
+     * @return the previous value, or null if there was none.
+     */
+    @SuppressWarnings("unchecked")
+    public V put(long key, V value) {
+        if (value == null) {
+            throw new IllegalArgumentException("null value");
+        }
+        if (2 * (_size + 1) > _keys.length) {
+            resize(2 * _keys.length);
+        }
+
+        int mask = _keys.length - 1;
+        int i = slot(key);
+        for (; _values[i] != null; i = (i + 1) & mask) {
+            if (_keys[i] == key) {
+                V old = (V) _values[i];
+                _values[i] = value;
+                return old;
+            }
+        }
+        _keys[i] = key;
+        _values[i] = value;
+        ++_size;
+        return null;
+    }
+
+    // ------------------------------------------------------------------------
+    /**
+     * Remove the entry with the specified key.
+     *
+     * @param key the key.
+     * @return the removed value, or null if not present.
+     */
+    @SuppressWarnings("unchecked")
+    public V remove(long key) {
+        int mask = _keys.length - 1;
+        int i = slot(key);
+        for (; _values[i] != null; i = (i + 1) & mask) {
+            if (_keys[i] == key) {
+                break;
+            }
+        }
+        if (_values[i] == null) {
+            return null;
+        }
+
+        V old = (V) _values[i];
+
+        // Shift back subsequent entries in the probe sequence that would no
+        // longer be reachable across the gap.
+        int gap = i;
+        for (int j = (gap + 1) & mask; _values[j] != null; j = (j + 1) & mask) {
+            int home = slot(_keys[j]);
+            boolean reachable = (gap <= j) ? (gap < home && home <= j)
+                                           : (gap < home || home <= j);
+            if (!reachable) {
+                _keys[gap] = _keys[j];
+                _values[gap] = _values[j];
+                gap = j;
+            }
+        }
+        _values[gap] = null;
+        --_size;
+        return old;
+    }
+
+    // ------------------------------------------------------------------------
+    /**
+     * Remove all entries.
+     */
+    public void clear() {
+        Arrays.fill(_values, null);
+        _size = 0;
+    }
+
+    // ------------------------------------------------------------------------
+    /**
+     * Return the preferred slot index of a key.
+     *
+     * @param key the key.
+     * @return the slot index.
+     */
+    protected int slot(long key) {
+        long hash = key * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ (hash >>> 32)) & (_keys.length - 1);
+    }
+
+    // ------------------------------------------------------------------------
+    /**
+     * Reallocate the arrays with a new capacity and reinsert all entries.
+     *
+     * @param capacity the new capacity; a power of 2.
+     */
+    @SuppressWarnings("unchecked")
+    protected void resize(int capacity) {
+        long[] oldKeys = _keys;
+        Object[] oldValues = _values;
+        _keys = new long[capacity];
+        _values = new Object[capacity];
+        _size = 0;
+        for (int i = 0; i < oldKeys.length; ++i) {
+            if (oldValues[i] != null) {
+                put(oldKeys[i], (V) oldValues[i]);
+            }
+        }
+    }
+
+    // ------------------------------------------------------------------------
+    /**
+     * Keys, indexed by slot.
+     */
+    protected long[] _keys;
+
+    /**
+     * Values, indexed by slot; null for empty slots.
+     */
+    protected Object[] _values;
+
+    /**
+     * Number of entries.
+     */
+    protected int _size;
+
+} // class LongObjectMap
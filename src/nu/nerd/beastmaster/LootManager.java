@@ -43,7 +43,12 @@ public class LootManager {
      * @param drops the loot table.
      */
     public void addDropSet(DropSet drops) {
-        _idToDrops.put(drops.getId().toLowerCase(), drops);
+        DropSet old = _idToDrops.put(drops.getId().toLowerCase(), drops);
+        if (old != null && old != drops) {
+            BeastMaster.LINKS.forget(old);
+        }
+        BeastMaster.LINKS.markDirty(drops);
+        BeastMaster.LINKS.redefined(drops.getId());
     }
 
     // ------------------------------------------------------------------------
@@ -53,7 +58,11 @@ public class LootManager {
      * @param id the ID of the loot table to remove.
      */
     public void removeDropSet(String id) {
-        _idToDrops.remove(id.toLowerCase());
+        DropSet old = _idToDrops.remove(id.toLowerCase());
+        if (old != null) {
+            BeastMaster.LINKS.forget(old);
+        }
+        BeastMaster.LINKS.redefined(id);
     }
 
     // ------------------------------------------------------------------------
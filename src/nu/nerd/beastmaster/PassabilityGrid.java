@@ -0,0 +1,135 @@
+package nu.nerd.beastmaster;
+
+import org.bukkit.World;
+
+// ----------------------------------------------------------------------------
+/**
+ * A reusable grid of block passability for the 3x3 columns centred on one
+ * block column, used to find locations where a mob can stand.
+ *
+ * {@link #load(World, int, int, int, int)} reads each block in the grid once
+ * into one bitmask per column. Searches then combine the column masks with
+ * bitwise operations, without further block lookups or allocation.
+ *
+ * A single instance can be reused for any number of searches, but only on the
+ * main thread.
+ */
+public class PassabilityGrid {
+    // ------------------------------------------------------------------------
+    /**
+     * Read the passability of the 3x3 columns centred on (x, z), over a range
+     * of Y coordinates.
+     *
+     * Blocks outside the vertical limits of the world count as impassable.
+     *
+     * @param world  the world.
+     * @param x      the X coordinate of the centre column.
+     * @param z      the Z coordinate of the centre column.
+     * @param minY   the lowest Y coordinate read.
+     * @param height the number of blocks read in each column, at most
+     *               {@link #MAX_HEIGHT}.
+     * @throws IllegalArgumentException if the height is out of range.
+     */
+    public void load(World world, int x, int z, int minY, int height) {
+        if (height < 3 || height > MAX_HEIGHT) {
+            throw new IllegalArgumentException("height out of range: " + height);
+        }
+
+        int worldMinY = world.getMinHeight();
+        int worldMaxY = world.getMaxHeight();
+        int allPassable = -1;
+        for (int dx = -1; dx <= 1; ++dx) {
+            for (int dz = -1; dz <= 1; ++dz) {
+                int mask = 0;
+                for (int i = 0; i < height; ++i) {
+                    int y = minY + i;
+                    if (y >= worldMinY && y < worldMaxY &&
+                        world.getBlockAt(x + dx, y, z + dz).isPassable()) {
+                        mask |= 1 << i;
+                    }
+                }
+                allPassable &= mask;
+            }
+        }
+
+        // Bit i is set if the 3x3x3 cube with its base at minY + i is
+        // passable.
+        _minY = minY;
+        _height = height;
+        _cubes = allPassable & (allPassable >>> 1) & (allPassable >>> 2) & ((1 << (height - 2)) - 1);
+    }
+
+    // ------------------------------------------------------------------------
+    /**
+     * Return true if the 3x3x3 cube whose base is centred at the specified Y
+     * coordinate of the loaded grid is passable.
+     *
+     * @param y the Y coordinate of the bottom layer of the cube.
+     * @return true if all 27 blocks are passable; false if not, or if the cube
+     *         is not entirely within the loaded grid.
+     */
+    public boolean isPassable3x3x3(int y) {
+        int i = y - _minY;
+        return i >= 0 && i < _height - 2 && (_cubes & (1 << i)) != 0;
+    }
+
+    // ------------------------------------------------------------------------
+    /**
+     * Find the highest passable 3x3x3 cube, searching down from the specified
+     * Y coordinate, then lower it while the cube below is passable, so that
+     * the result is on the ground if possible.
+     *
+     * @param topY    the highest base Y coordinate searched.
+     * @param search  the number of base Y coordinates searched, downwards from
+     *                topY.
+     * @param maxDrop the maximum distance in blocks that the cube found is
+     *                lowered.
+     * @return the base Y coordinate of the cube, or {@link #NO_Y} if there is
+     *         no passable cube.
+     */
+    public int findSafeY(int topY, int search, int maxDrop) {
+        int y = topY;
+        int bottom = topY - search;
+        while (y > bottom && !isPassable3x3x3(y)) {
+            --y;
+        }
+        if (y == bottom) {
+            return NO_Y;
+        }
+
+        int lowest = y - maxDrop;
+        while (y > lowest && isPassable3x3x3(y - 1)) {
+            --y;
+        }
+        return y;
+    }
+
+    // ------------------------------------------------------------------------
+    /**
+     * Return value of {@link #findSafeY(int, int, int)} when there is no safe
+     * location.
+     */
+    public static final int NO_Y = Integer.MIN_VALUE;
+
+    /**
+     * The maximum number of blocks in each column of the grid.
+     */
+    public static final int MAX_HEIGHT = 32;
+
+    /**
+     * The Y coordinate of the lowest block in the grid.
+     */
+    protected int _minY;
+
+    /**
+     * The number of blocks in each column of the grid.
+     */
+    protected int _height;
+
+    /**
+     * Bit i is set if the 3x3x3 cube with its bottom layer at _minY + i is
+     * passable.
+     */
+    protected int _cubes;
+
+} // class PassabilityGrid
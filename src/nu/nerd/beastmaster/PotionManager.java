@@ -60,6 +60,7 @@ public class PotionManager {
      */
     public void addPotionSet(PotionSet potions) {
         _idToPotions.put(potions.getId().toLowerCase(), potions);
+        BeastMaster.LINKS.redefined(potions.getId());
     }
 
     // ------------------------------------------------------------------------
@@ -70,6 +71,7 @@ public class PotionManager {
      */
     public void removePotionSet(String id) {
         _idToPotions.remove(id.toLowerCase());
+        BeastMaster.LINKS.redefined(id);
     }
 
     // ------------------------------------------------------------------------
@@ -0,0 +1,203 @@
+package nu.nerd.beastmaster;
+
+import org.bukkit.Location;
+import org.bukkit.entity.Projectile;
+
+import me.libraryaddict.disguise.disguisetypes.Disguise;
+import nu.nerd.beastmaster.mobs.MobType;
+
+// ----------------------------------------------------------------------------
+/**
+ * The projectiles launched by one custom mob in one tick, e.g. by a multishot
+ * crossbow or a blaze's fireballs.
+ *
+ * The shooter's "projectile-*" properties are resolved once per volley, the
+ * projectile disguise is parsed once, the launch sound is played once, and
+ * the number of projectile mobs spawned is capped by
+ * {@link Configuration#PROJECTILE_MOBS_PER_VOLLEY}, if that is positive.
+ */
+public class ProjectileVolley {
+    // ------------------------------------------------------------------------
+    /**
+     * Constructor.
+     *
+     * @param mobType the MobType of the shooter.
+     * @param tick    the server tick when the volley was launched.
+     */
+    public ProjectileVolley(MobType mobType, int tick) {
+        _mobType = mobType;
+        _tick = tick;
+        int maxMobs = BeastMaster.CONFIG.PROJECTILE_MOBS_PER_VOLLEY;
+        _remainingMobs = (maxMobs > 0) ? maxMobs : Integer.MAX_VALUE;
+        if (mobType.getDerivedProperty("projectile-mobs").getValue() != null) {
+            _lootOrMob = mobType.getDerivedProperty("projectile-mobs").getLinkedValue();
+        }
+        if (mobType.hasBehaviour(MobType.HAS_PROJECTILE_LAUNCH)) {
+            _disguise = (String) mobType.getDerivedProperty("projectile-disguise").getValue();
+            _launchSound = (SoundEffect) mobType.getDerivedProperty("projectile-launch-sound").getValue();
+        }
+    }
+
+    // ------------------------------------------------------------------------
+    /**
+     * Return true if this volley was launched by a mob of the specified type
+     * in the specified tick.
+     *
+     * @param mobType the MobType of the shooter.
+     * @param tick    the server tick.
+     * @return true if the specified projectile belongs to this volley.
+     */
+    public boolean matches(MobType mobType, int tick) {
+        return _mobType == mobType && _tick == tick;
+    }
+
+    // ------------------------------------------------------------------------
+    /**
+     * Return the DropSet or MobType that the shooter's "projectile-mobs"
+     * property is linked to, or null if not set.
+     *
+     * @return the DropSet or MobType, or null.
+     */
+    public Object getLootOrMob() {
+        return _lootOrMob;
+    }
+
+    // ------------------------------------------------------------------------
+    /**
+     * Return true if the volley has not yet reserved its maximum number of
+     * projectile mobs.
+     *
+     * @return true if more projectile mobs can be spawned.
+     */
+    public boolean canSpawnMobs() {
+        return _remainingMobs > 0;
+    }
+
+    // ------------------------------------------------------------------------
+    /**
+     * Return the number of projectile mobs that the volley may still spawn.
+     *
+     * This is used as the mob limit of each projectile's {@link DropResults}.
+     *
+     * @return the number of projectile mobs that may still be spawned.
+     */
+    public int getRemainingMobs() {
+        return _remainingMobs;
+    }
+
+    // ------------------------------------------------------------------------
+    /**
+     * Set the number of projectile mobs that the volley may still spawn, after
+     * a projectile's drops have reserved some.
+     *
+     * @param remainingMobs the number of projectile mobs that may still be
+     *                      spawned.
+     */
+    public void setRemainingMobs(int remainingMobs) {
+        _remainingMobs = remainingMobs;
+    }
+
+    // ------------------------------------------------------------------------
+    /**
+     * Return true if the last projectile to spawn mobs was removed, i.e. its
+     * drops did not include the vanilla drop.
+     *
+     * Projectiles launched after the cap on projectile mobs is reached are
+     * treated the same way.
+     *
+     * @return true if the last projectile to spawn mobs was removed.
+     */
+    public boolean isProjectileRemoved() {
+        return _projectileRemoved;
+    }
+
+    // ------------------------------------------------------------------------
+    /**
+     * Record whether the last projectile to spawn mobs was removed.
+     *
+     * @param projectileRemoved true if the projectile was removed.
+     */
+    public void setProjectileRemoved(boolean projectileRemoved) {
+        _projectileRemoved = projectileRemoved;
+    }
+
+    // ------------------------------------------------------------------------
+    /**
+     * Apply the shooter's "projectile-disguise", if set, to a projectile.
+     *
+     * The disguise is parsed for the first projectile of the volley and
+     * cloned for the rest.
+     *
+     * @param projectile the projectile.
+     */
+    public void disguise(Projectile projectile) {
+        if (_disguise == null || _disguise.isEmpty()) {
+            return;
+        }
+        if (_template == null) {
+            _template = BeastMaster.DISGUISES.getTemplate(projectile, _disguise);
+            if (_template == null) {
+                _disguise = null;
+                return;
+            }
+        }
+        BeastMaster.DISGUISES.createDisguise(projectile, projectile.getWorld(), _template.clone());
+    }
+
+    // ------------------------------------------------------------------------
+    /**
+     * Play the shooter's "projectile-launch-sound", if set and not already
+     * played for this volley.
+     *
+     * @param loc the location of the projectile.
+     */
+    public void playLaunchSound(Location loc) {
+        if (_launchSound != null) {
+            _launchSound.play(loc);
+            _launchSound = null;
+        }
+    }
+
+    // ------------------------------------------------------------------------
+    /**
+     * The MobType of the shooter.
+     */
+    protected MobType _mobType;
+
+    /**
+     * The server tick when the volley was launched.
+     */
+    protected int _tick;
+
+    /**
+     * The DropSet or MobType linked by "projectile-mobs", or null.
+     */
+    protected Object _lootOrMob;
+
+    /**
+     * The encoded projectile disguise, or null if none or invalid.
+     */
+    protected String _disguise;
+
+    /**
+     * The parsed projectile disguise, or null if not yet parsed.
+     */
+    protected Disguise _template;
+
+    /**
+     * The launch sound, or null if none or already played.
+     */
+    protected SoundEffect _launchSound;
+
+    /**
+     * The number of projectile mobs that the volley may still spawn,
+     * including those reserved for later ticks by the {@link SpawnScheduler}.
+     */
+    protected int _remainingMobs;
+
+    /**
+     * True if the last projectile to spawn mobs was removed.
+     */
+    protected boolean _projectileRemoved;
+
+} // class ProjectileVolley
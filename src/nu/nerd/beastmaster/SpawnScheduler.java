@@ -0,0 +1,121 @@
+package nu.nerd.beastmaster;
+
+import java.util.ArrayDeque;
+import java.util.function.IntSupplier;
+
+import org.bukkit.Bukkit;
+import org.bukkit.scheduler.BukkitTask;
+
+// ----------------------------------------------------------------------------
+/**
+ * Spreads the spawning of large numbers of mobs over several ticks.
+ *
+ * Each spawn is a Runnable. At most a configured number of spawns run in any
+ * one tick. Spawns scheduled while this tick's budget remains run
+ * immediately. The rest are queued and run in order on subsequent ticks.
+ */
+public class SpawnScheduler {
+    // ------------------------------------------------------------------------
+    /**
+     * Constructor.
+     *
+     * @param budget supplies the maximum number of spawns per tick, which is
+     *               read from the configuration each tick.
+     */
+    public SpawnScheduler(IntSupplier budget) {
+        _budget = budget;
+    }
+
+    // ------------------------------------------------------------------------
+    /**
+     * Schedule a mob spawn.
+     *
+     * @param spawn the code to spawn the mob.
+     */
+    public void schedule(Runnable spawn) {
+        if (_queue.isEmpty() && takeBudget()) {
+            spawn.run();
+        } else {
+            _queue.add(spawn);
+            if (_task == null) {
+                _task = Bukkit.getScheduler().runTaskTimer(BeastMaster.PLUGIN, this::tick, 1, 1);
+            }
+        }
+    }
+
+    // ------------------------------------------------------------------------
+    /**
+     * Discard all queued spawns.
+     *
+     * This is called when the plugin is disabled.
+     */
+    public void clear() {
+        _queue.clear();
+        if (_task != null) {
+            _task.cancel();
+            _task = null;
+        }
+    }
+
+    // ------------------------------------------------------------------------
+    /**
+     * Run queued spawns up to the per-tick budget, and stop the task when the
+     * queue is empty.
+     */
+    protected void tick() {
+        while (!_queue.isEmpty() && takeBudget()) {
+            _queue.poll().run();
+        }
+
+        if (_queue.isEmpty() && _task != null) {
+            _task.cancel();
+            _task = null;
+        }
+    }
+
+    // ------------------------------------------------------------------------
+    /**
+     * Consume one spawn from the budget of the current tick.
+     *
+     * @return true if the budget was not exhausted.
+     */
+    protected boolean takeBudget() {
+        int tick = Bukkit.getCurrentTick();
+        if (tick != _budgetTick) {
+            _budgetTick = tick;
+            _spawnsThisTick = 0;
+        }
+        if (_spawnsThisTick < Math.max(1, _budget.getAsInt())) {
+            ++_spawnsThisTick;
+            return true;
+        }
+        return false;
+    }
+
+    // ------------------------------------------------------------------------
+    /**
+     * Supplies the maximum number of spawns per tick.
+     */
+    protected IntSupplier _budget;
+
+    /**
+     * Queued spawns, in the order they were scheduled.
+     */
+    protected ArrayDeque<Runnable> _queue = new ArrayDeque<>();
+
+    /**
+     * The repeating task that runs queued spawns, or null if not running.
+     */
+    protected BukkitTask _task;
+
+    /**
+     * The server tick when {@link #_spawnsThisTick} was last reset.
+     */
+    protected int _budgetTick = -1;
+
+    /**
+     * The number of spawns run in {@link #_budgetTick}.
+     */
+    protected int _spawnsThisTick;
+
+} // class SpawnScheduler
@@ -0,0 +1,151 @@
+package nu.nerd.beastmaster;
+
+import java.util.ArrayList;
+import java.util.function.Consumer;
+import java.util.function.ToLongFunction;
+
+// ----------------------------------------------------------------------------
+/**
+ * A hashed timing wheel that tracks elements until their expiry tick.
+ *
+ * Elements are placed in one of a fixed number of buckets according to their
+ * expiry tick, modulo the number of buckets. Each tick, only the bucket for
+ * that tick is examined, so the cost of advancing the wheel is proportional to
+ * the number of elements that hash to that bucket, rather than the total
+ * number of elements. Elements that expire more than one revolution of the
+ * wheel in the future simply remain in their bucket until their tick comes.
+ *
+ * The expiry tick of each element is obtained from the element itself, so that
+ * the wheel doesn't need to allocate an entry per element.
+ */
+public class TimingWheel<E> {
+    // ------------------------------------------------------------------------
+    /**
+     * Constructor.
+     *
+     * @param bucketBits   the base 2 logarithm of the number of buckets.
+     * @param expiryTickOf a function that returns the expiry tick of an
+     *                     element; its value must not change while the
+     *                     element is in the wheel.
+     */
+    @SuppressWarnings("unchecked")
+    public TimingWheel(int bucketBits, ToLongFunction<E> expiryTickOf) {
+        _buckets = new ArrayList[1 << bucketBits];
+        _mask = _buckets.length - 1;
+        _expiryTickOf = expiryTickOf;
+    }
+
+    // ------------------------------------------------------------------------
+    /**
+     * Return the current tick of the wheel.
+     *
+     * @return the current tick of the wheel.
+     */
+    public long getTick() {
+        return _tick;
+    }
+
+    // ------------------------------------------------------------------------
+    /**
+     * Add an element to the wheel.
+     *
+     * Elements whose expiry tick is not after the current tick expire on the
+     * next call to {@link #advance(Consumer)}.
+     *
+     * @param element the element.
+     */
+    public void add(E element) {
+        long expiryTick = Math.max(_tick + 1, _expiryTickOf.applyAsLong(element));
+        int index = (int) (expiryTick & _mask);
+        ArrayList<E> bucket = _buckets[index];
+        if (bucket == null) {
+            bucket = _buckets[index] = new ArrayList<>();
+        }
+        bucket.add(element);
+    }
+
+    // ------------------------------------------------------------------------
+    /**
+     * Remove an element from the wheel before it expires.
+     *
+     * @param element the element.
+     * @return true if the element was in the wheel.
+     */
+    public boolean remove(E element) {
+        // An element added with an expiry tick in the past is in the bucket for
+        // the next tick, and is removed by the next advance() if not before.
+        long expiryTick = Math.max(_tick + 1, _expiryTickOf.applyAsLong(element));
+        ArrayList<E> bucket = _buckets[(int) (expiryTick & _mask)];
+        return bucket != null && bucket.remove(element);
+    }
+
+    // ------------------------------------------------------------------------
+    /**
+     * Remove all elements.
+     */
+    public void clear() {
+        for (ArrayList<E> bucket : _buckets) {
+            if (bucket != null) {
+                bucket.clear();
+            }
+        }
+    }
+
+    // ------------------------------------------------------------------------
+    /**
+     * Advance the wheel by one tick, removing elements that have expired.
+     *
+     * @param expired called for each expired element, after it has been
+     *                removed from the wheel.
+     */
+    public void advance(Consumer<E> expired) {
+        ++_tick;
+        ArrayList<E> bucket = _buckets[(int) (_tick & _mask)];
+        if (bucket == null || bucket.isEmpty()) {
+            return;
+        }
+
+        // Remove expired elements before calling back, so that the callback
+        // can safely add or remove elements.
+        ArrayList<E> expiredElements = null;
+        for (int i = bucket.size() - 1; i >= 0; --i) {
+            E element = bucket.get(i);
+            if (_expiryTickOf.applyAsLong(element) <= _tick) {
+                int last = bucket.size() - 1;
+                bucket.set(i, bucket.get(last));
+                bucket.remove(last);
+                if (expiredElements == null) {
+                    expiredElements = new ArrayList<>();
+                }
+                expiredElements.add(element);
+            }
+        }
+
+        if (expiredElements != null) {
+            expiredElements.forEach(expired);
+        }
+    }
+
+    // ------------------------------------------------------------------------
+    /**
+     * Buckets of elements, indexed by expiry tick modulo the number of
+     * buckets. Allocated on demand.
+     */
+    protected ArrayList<E>[] _buckets;
+
+    /**
+     * Mask selecting the bucket index bits of a tick.
+     */
+    protected int _mask;
+
+    /**
+     * Function returning the expiry tick of an element.
+     */
+    protected ToLongFunction<E> _expiryTickOf;
+
+    /**
+     * The current tick.
+     */
+    protected long _tick;
+
+} // class TimingWheel
@@ -13,13 +13,11 @@ import java.util.function.Predicate;
 import java.util.regex.Pattern;
 import java.util.regex.PatternSyntaxException;
 
-import org.bukkit.Bukkit;
 import org.bukkit.ChatColor;
 import org.bukkit.Location;
 import org.bukkit.Material;
 import org.bukkit.Particle;
 import org.bukkit.Tag;
-import org.bukkit.block.Block;
 import org.bukkit.enchantments.Enchantment;
 import org.bukkit.inventory.ItemStack;
 import org.bukkit.inventory.meta.BookMeta;
@@ -128,32 +126,6 @@ public class Util {
         return NOT_FULL_BLOCK_MATERIALS.contains(material);
     }
 
-    // ------------------------------------------------------------------------
-    /**
-     * Return true if the 3x3x3 blocks centred horizontally on the specified
-     * location, with the location in the bottom row of the three, are passable.
-     *
-     * @param loc the location of the middle, bottom row of the 3x3x3 box to
-     *            check.
-     * @return true if it's air.
-     */
-    public static boolean isPassable3x3x3(Location loc) {
-        // Check for 3x3x3 air.
-        for (int dx = -1; dx <= 1; ++dx) {
-            for (int dz = -1; dz <= 1; ++dz) {
-                // Offset up for undulating terrain.
-                for (int dy = 0; dy <= 2; ++dy) {
-                    Location checkLoc = loc.clone().add(dx, dy, dz);
-                    Block checkBlock = checkLoc.getBlock();
-                    if (!checkBlock.isPassable()) {
-                        return false;
-                    }
-                }
-            }
-        }
-        return true;
-    }
-
     // ------------------------------------------------------------------------
     /**
      * Show particles that resemble an enderman teleport at the specified mob
@@ -177,10 +149,8 @@ public class Util {
     public static void doTeleportEffects(MobType mobType, Location mobLoc) {
         if (mobType != null) {
             SoundEffect teleportSound = (SoundEffect) mobType.getDerivedProperty("teleport-sound").getValue();
-            if (teleportSound != null) {
-                // Silent unless delayed. Probably LibsDisguises.
-                Bukkit.getScheduler().runTaskLater(BeastMaster.PLUGIN, () -> teleportSound.play(mobLoc), 1);
-            }
+            // Silent unless delayed. Probably LibsDisguises.
+            BeastMaster.EFFECTS.playSound(teleportSound, mobLoc, 1);
         }
         showTeleportParticles(mobLoc);
     }
@@ -479,6 +449,70 @@ public class Util {
         return _random.nextDouble();
     }
 
+    // ------------------------------------------------------------------------
+    /**
+     * Pack chunk coordinates into a single long.
+     *
+     * @param chunkX the chunk X coordinate.
+     * @param chunkZ the chunk Z coordinate.
+     * @return the packed coordinates.
+     */
+    public static long chunkKey(int chunkX, int chunkZ) {
+        return ((long) chunkX << 32) | (chunkZ & 0xFFFFFFFFL);
+    }
+
+    // ------------------------------------------------------------------------
+    /**
+     * Pack block coordinates into a single long.
+     *
+     * X and Z are stored in 26 bits each and Y in 12 bits, which covers the
+     * full extent of a Minecraft world.
+     *
+     * @param x the X coordinate.
+     * @param y the Y coordinate.
+     * @param z the Z coordinate.
+     * @return the packed coordinates.
+     */
+    public static long blockKey(int x, int y, int z) {
+        return ((long) (x & 0x3FFFFFF) << 38) | ((long) (z & 0x3FFFFFF) << 12) | (y & 0xFFF);
+    }
+
+    // ------------------------------------------------------------------------
+    /**
+     * Return the X coordinate of packed block coordinates.
+     *
+     * @param key the packed coordinates returned by
+     *            {@link #blockKey(int, int, int)}.
+     * @return the X coordinate.
+     */
+    public static int blockKeyX(long key) {
+        return (int) (key >> 38);
+    }
+
+    // ------------------------------------------------------------------------
+    /**
+     * Return the Y coordinate of packed block coordinates.
+     *
+     * @param key the packed coordinates returned by
+     *            {@link #blockKey(int, int, int)}.
+     * @return the Y coordinate.
+     */
+    public static int blockKeyY(long key) {
+        return (int) (key << 52 >> 52);
+    }
+
+    // ------------------------------------------------------------------------
+    /**
+     * Return the Z coordinate of packed block coordinates.
+     *
+     * @param key the packed coordinates returned by
+     *            {@link #blockKey(int, int, int)}.
+     * @return the Z coordinate.
+     */
+    public static int blockKeyZ(long key) {
+        return (int) (key << 26 >> 38);
+    }
+
     // ------------------------------------------------------------------------
     /**
      * A set of common Materials that are not a full block.
@@ -1,7 +1,9 @@
 package nu.nerd.beastmaster;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.Map.Entry;
-import java.util.NavigableMap;
 import java.util.Random;
 import java.util.Set;
 import java.util.TreeMap;
@@ -14,23 +16,12 @@ import java.util.stream.Collectors;
  * 
  * The probability of choosing a particular element is its weight divided by the
  * sum of all weights.
+ * 
+ * Weights are stored in a Fenwick (binary indexed) tree over a primitive array,
+ * indexed by slot number. Adding, removing, reweighting and choosing elements
+ * are all O(log n). The slots of removed elements are reused.
  */
 public class WeightedSelection<E> {
-    // --------------------------------------------------------------------------
-    /**
-     * Main program for a bit of interactive testing.
-     */
-    public static void main(String[] args) {
-        WeightedSelection<String> w = new WeightedSelection<String>();
-        w.addChoice("A", 1);
-        w.addChoice("B", 2);
-        // w.addChoice("C", 4);
-        // w.addChoice("D", 8);
-        System.out.println(w);
-        System.out.println(w.removeChoice("A"));
-        System.out.println(w);
-    }
-
     // --------------------------------------------------------------------------
     /**
      * Default constructor.
@@ -55,24 +46,81 @@ public class WeightedSelection<E> {
      */
     public void clear() {
         _total = 0;
+        _size = 0;
+        _tree = new double[INITIAL_CAPACITY + 1];
+        _weights = new double[INITIAL_CAPACITY];
         _choices.clear();
+        _slots.clear();
+        _freeSlots.clear();
     }
 
     // --------------------------------------------------------------------------
     /**
      * Add a choice.
      * 
+     * If the choice has already been added, its weight is increased by the
+     * specified weight.
+     * 
      * @param choice the chosen object.
      * @param weight its probability weight; this must be greater than 0, or the
      *        choice is not added.
      */
     public void addChoice(E choice, double weight) {
-        if (weight > 0) {
-            _total += weight;
-            _choices.put(_total, choice);
+        if (weight <= 0) {
+            return;
+        }
+
+        Integer slot = _slots.get(choice);
+        if (slot != null) {
+            adjust(slot, weight);
+            return;
+        }
+
+        if (!_freeSlots.isEmpty()) {
+            slot = _freeSlots.remove(_freeSlots.size() - 1);
+            _choices.set(slot, choice);
+        } else {
+            if (_size == _weights.length) {
+                grow();
+            }
+            slot = _size++;
+            _choices.add(choice);
+        }
+        _slots.put(choice, slot);
+        adjust(slot, weight);
+    }
+
+    // --------------------------------------------------------------------------
+    /**
+     * Set the weight of a choice, adding it if not present.
+     * 
+     * @param choice the choice.
+     * @param weight its new probability weight; if not greater than 0, the
+     *        choice is removed.
+     */
+    public void setWeight(E choice, double weight) {
+        Integer slot = _slots.get(choice);
+        if (slot == null) {
+            addChoice(choice, weight);
+        } else if (weight <= 0) {
+            removeChoice(choice);
+        } else {
+            adjust(slot, weight - _weights[slot]);
         }
     }
 
+    // --------------------------------------------------------------------------
+    /**
+     * Return the weight of a choice, or 0 if not present.
+     * 
+     * @param choice the choice.
+     * @return the weight of the choice, or 0 if not present.
+     */
+    public double getWeight(E choice) {
+        Integer slot = _slots.get(choice);
+        return (slot != null) ? _weights[slot] : 0;
+    }
+
     // --------------------------------------------------------------------------
     /**
      * Remove a choice.
@@ -81,33 +129,17 @@ public class WeightedSelection<E> {
      * @return the removed choice, or null if not found.
      */
     public E removeChoice(E choice) {
-        E removed = null;
-
-        // Build up new field values to swap in.
-        // All choices after the removed choice need their weights adjusted
-        // down by the difference between the removed key and the key before.
-        // We can't find a choice by key, so we need to iterate over all
-        // elements. Therefore this method isn't drastically inefficient
-        // compared to the fastest implementation.
-        double newTotal = 0;
-        TreeMap<Double, E> newChoices = new TreeMap<Double, E>();
-
-        double keyBefore = 0;
-        for (Entry<Double, E> entry : _choices.entrySet()) {
-            // The original weight is the difference between successive keys.
-            double weight = entry.getKey() - keyBefore;
-            keyBefore = entry.getKey();
-
-            if (entry.getValue().equals(choice)) {
-                removed = entry.getValue();
-            } else {
-                newTotal += weight;
-                newChoices.put(newTotal, entry.getValue());
-            }
+        Integer slot = _slots.remove(choice);
+        if (slot == null) {
+            return null;
         }
 
-        _total = newTotal;
-        _choices = newChoices;
+        E removed = _choices.get(slot);
+        adjust(slot, -_weights[slot]);
+        // Avoid accumulating rounding error in unused slots.
+        _weights[slot] = 0;
+        _choices.set(slot, null);
+        _freeSlots.add(slot);
         return removed;
     }
 
@@ -120,25 +152,51 @@ public class WeightedSelection<E> {
      *         choose.
      */
     public E choose() {
+        if (_total <= 0) {
+            return null;
+        }
+
+        // Find the first slot whose cumulative weight exceeds the value by
+        // descending the tree. Slots with zero weight are never selected.
         double value = _random.nextDouble() * _total;
+        int index = 0;
+        for (int step = Integer.highestOneBit(_size); step > 0; step >>= 1) {
+            int next = index + step;
+            if (next <= _size && _tree[next] <= value) {
+                index = next;
+                value -= _tree[next];
+            }
+        }
 
-        // Using floorEntry() is more correct here in the sense that it gives
-        // the lower choice right on the boundary, and Random.nextDouble()
-        // returns[0.0,1.0). But floorEntry() makes it much harder to extract
-        // weights and thresholds from the entries.
-        Entry<Double, E> entry = _choices.ceilingEntry(value);
-        return (entry != null) ? entry.getValue() : null;
+        // Rounding error can carry the search past the last non-empty slot.
+        for (int slot = Math.min(index, _size - 1); slot >= 0; --slot) {
+            if (_weights[slot] > 0) {
+                return _choices.get(slot);
+            }
+        }
+        return null;
     }
 
     // --------------------------------------------------------------------------
     /**
-     * Return the entrySet() of the underlying collection (mainly for
-     * debugging).
+     * Return a view of the choices as a map from cumulative weight to choice,
+     * in slot order, such that the weight of each choice is the difference
+     * between its key and the previous key.
+     * 
+     * The view is a snapshot, computed in O(n), mainly for debugging.
      * 
-     * @rReturn the entrySet() of the underlying collection
+     * @return the entrySet() of a map from cumulative weight to choice.
      */
     public Set<Entry<Double, E>> entrySet() {
-        return _choices.entrySet();
+        TreeMap<Double, E> cumulative = new TreeMap<Double, E>();
+        double sum = 0;
+        for (int slot = 0; slot < _size; ++slot) {
+            if (_weights[slot] > 0) {
+                sum += _weights[slot];
+                cumulative.put(sum, _choices.get(slot));
+            }
+        }
+        return cumulative.entrySet();
     }
 
     // --------------------------------------------------------------------------
@@ -149,7 +207,7 @@ public class WeightedSelection<E> {
      */
     @Override
     public String toString() {
-        return _choices.entrySet().stream()
+        return entrySet().stream()
         .map(e -> e.getKey() + ": " + e.getValue())
         .collect(Collectors.joining(", "));
     }
@@ -165,6 +223,42 @@ public class WeightedSelection<E> {
     }
 
     // --------------------------------------------------------------------------
+    /**
+     * Add a (possibly negative) amount to the weight of a slot.
+     * 
+     * @param slot the 0-based slot index.
+     * @param delta the change in weight.
+     */
+    protected void adjust(int slot, double delta) {
+        _weights[slot] += delta;
+        _total += delta;
+        for (int i = slot + 1; i < _tree.length; i += i & -i) {
+            _tree[i] += delta;
+        }
+    }
+
+    // --------------------------------------------------------------------------
+    /**
+     * Double the capacity of the arrays and rebuild the tree in O(n).
+     */
+    protected void grow() {
+        _weights = Arrays.copyOf(_weights, 2 * _weights.length);
+        _tree = new double[_weights.length + 1];
+        for (int i = 1; i <= _size; ++i) {
+            _tree[i] += _weights[i - 1];
+            int parent = i + (i & -i);
+            if (parent <= _weights.length) {
+                _tree[parent] += _tree[i];
+            }
+        }
+    }
+
+    // --------------------------------------------------------------------------
+    /**
+     * Initial number of slots.
+     */
+    protected static final int INITIAL_CAPACITY = 8;
+
     /**
      * The random number generator.
      */
@@ -176,7 +270,33 @@ public class WeightedSelection<E> {
     protected double _total = 0;
 
     /**
-     * Sum of all of the weights of all choices.
+     * Number of slots in use, including free slots of removed choices.
+     */
+    protected int _size = 0;
+
+    /**
+     * The Fenwick tree of weights, 1-based: _tree[i] is the sum of the weights
+     * of slots [i - (i & -i), i - 1].
+     */
+    protected double[] _tree = new double[INITIAL_CAPACITY + 1];
+
+    /**
+     * The weight of each slot; 0 for free slots.
+     */
+    protected double[] _weights = new double[INITIAL_CAPACITY];
+
+    /**
+     * The choice in each slot; null for free slots.
+     */
+    protected ArrayList<E> _choices = new ArrayList<E>();
+
+    /**
+     * Map from choice to slot index.
+     */
+    protected HashMap<E, Integer> _slots = new HashMap<E, Integer>();
+
+    /**
+     * Indices of free slots of removed choices, available for reuse.
      */
-    protected NavigableMap<Double, E> _choices = new TreeMap<Double, E>();
+    protected ArrayList<Integer> _freeSlots = new ArrayList<Integer>();
 } // class WeightedSelection
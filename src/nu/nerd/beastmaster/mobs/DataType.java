@@ -139,6 +139,16 @@ public class DataType {
             return value;
         }
 
+        @Override
+        public boolean isReference() {
+            return true;
+        }
+
+        @Override
+        public Object resolve(Object value) {
+            return BeastMaster.LOOTS.getDropSet((String) value);
+        }
+
         @Override
         public int compare(Object o1, Object o2) {
             return ((String) o1).compareTo((String) o2);
@@ -181,6 +191,18 @@ public class DataType {
             return value;
         }
 
+        @Override
+        public boolean isReference() {
+            return true;
+        }
+
+        @Override
+        public Object resolve(Object value) {
+            String id = (String) value;
+            DropSet dropSet = BeastMaster.LOOTS.getDropSet(id);
+            return (dropSet != null) ? dropSet : BeastMaster.ITEMS.getItem(id);
+        }
+
         @Override
         public int compare(Object o1, Object o2) {
             return ((String) o1).compareTo((String) o2);
@@ -212,6 +234,18 @@ public class DataType {
             return value;
         }
 
+        @Override
+        public boolean isReference() {
+            return true;
+        }
+
+        @Override
+        public Object resolve(Object value) {
+            String id = (String) value;
+            DropSet dropSet = BeastMaster.LOOTS.getDropSet(id);
+            return (dropSet != null) ? dropSet : BeastMaster.MOBS.getMobType(id);
+        }
+
         @Override
         public int compare(Object o1, Object o2) {
             return ((String) o1).compareTo((String) o2);
@@ -238,6 +272,16 @@ public class DataType {
             return value;
         }
 
+        @Override
+        public boolean isReference() {
+            return true;
+        }
+
+        @Override
+        public Object resolve(Object value) {
+            return BeastMaster.POTIONS.getPotionSet((String) value);
+        }
+
         @Override
         public int compare(Object o1, Object o2) {
             return ((String) o1).compareTo((String) o2);
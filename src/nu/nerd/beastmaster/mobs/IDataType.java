@@ -61,4 +61,28 @@ public interface IDataType extends Comparator<Object> {
      */
     public Object deserialise(String value) throws IllegalArgumentException;
 
+    // ------------------------------------------------------------------------
+    /**
+     * Return true if values of this type are string IDs of other configured
+     * objects, which are resolved by {@link #resolve(Object)}.
+     *
+     * @return true if values of this type are references by ID.
+     */
+    default public boolean isReference() {
+        return false;
+    }
+
+    // ------------------------------------------------------------------------
+    /**
+     * Resolve a reference by ID to the configured object that it identifies.
+     *
+     * This is only called for types where {@link #isReference()} returns true.
+     *
+     * @param value the non-null value.
+     * @return the referenced object, or null if there is no such object.
+     */
+    default public Object resolve(Object value) {
+        return null;
+    }
+
 } // class IDataType
\ No newline at end of file
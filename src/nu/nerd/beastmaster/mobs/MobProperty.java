@@ -6,6 +6,8 @@ import java.util.logging.Logger;
 import org.bukkit.configuration.ConfigurationSection;
 import org.bukkit.entity.LivingEntity;
 
+import nu.nerd.beastmaster.BeastMaster;
+
 // ----------------------------------------------------------------------------
 /**
  * An interface implemented by all configurable properties of mobs.
@@ -108,6 +110,13 @@ public class MobProperty {
      */
     public void setValue(Object value) {
         _value = value;
+        if (_mobType != null) {
+            BeastMaster.LINKS.markDirty(_mobType);
+        }
+        MobType.invalidateBehaviours();
+        if (_type == DataType.DISGUISE) {
+            BeastMaster.DISGUISES.invalidateTemplates();
+        }
     }
 
     // ------------------------------------------------------------------------
@@ -123,6 +132,38 @@ public class MobProperty {
         return _value;
     }
 
+    // ------------------------------------------------------------------------
+    /**
+     * Return the object referenced by the value of this property, as resolved
+     * by the most recent link phase.
+     * 
+     * @return the referenced object, or null if the type of this property is
+     *         not a reference, the value is null, or the reference is
+     *         dangling.
+     */
+    public Object getLinkedValue() {
+        return _linkedValue;
+    }
+
+    // ------------------------------------------------------------------------
+    /**
+     * Resolve the value of this property to the object it references, if the
+     * type of this property is a reference by ID.
+     * 
+     * @param logger used to warn about dangling references.
+     */
+    public void link(Logger logger) {
+        _linkedValue = null;
+        if (_value != null && _type.isReference()) {
+            BeastMaster.LINKS.addDependency(_mobType, (String) _value);
+            _linkedValue = _type.resolve(_value);
+            if (_linkedValue == null) {
+                logger.warning("Mob type " + _mobType.getId() + " property " + _id +
+                               " refers to unknown ID " + _value + ".");
+            }
+        }
+    }
+
     // ------------------------------------------------------------------------
     /**
      * Configure a mob according to this property.
@@ -182,6 +223,11 @@ public class MobProperty {
      */
     protected Object _value;
 
+    /**
+     * The object referenced by {@link #_value}, for reference types.
+     */
+    protected Object _linkedValue;
+
     /**
      * The code to execute to configure this property on a mob.
      */
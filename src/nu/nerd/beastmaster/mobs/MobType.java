@@ -30,16 +30,16 @@ import nu.nerd.beastmaster.BeastMaster;
 import nu.nerd.beastmaster.Drop;
 import nu.nerd.beastmaster.DropSet;
 import nu.nerd.beastmaster.DropType;
+import nu.nerd.beastmaster.ILinkable;
 import nu.nerd.beastmaster.Item;
 import nu.nerd.beastmaster.PotionSet;
 import nu.nerd.beastmaster.SoundEffect;
-import nu.nerd.entitymeta.EntityMeta;
 
 // ----------------------------------------------------------------------------
 /**
  * Represents a custom mob type.
  */
-public class MobType {
+public class MobType implements ILinkable {
     // ------------------------------------------------------------------------
     /**
      * Return the set of property names that are immutable for predefined Mob
@@ -135,10 +135,12 @@ public class MobType {
     /**
      * Return the parent mob type, or null if unset or invalid.
      *
+     * The parent is resolved from its ID when this mob type is linked.
+     *
      * @return the parent mob type, or null if unset or invalid.
      */
     public MobType getParentType() {
-        return BeastMaster.MOBS.getMobType(getParentTypeId());
+        return _parentType;
     }
 
     // ------------------------------------------------------------------------
@@ -168,8 +170,7 @@ public class MobType {
      * @return the DropSet consulted when this mob dies.
      */
     public DropSet getDrops() {
-        String dropsId = getDropsId();
-        return dropsId != null ? BeastMaster.LOOTS.getDropSet(dropsId) : null;
+        return (DropSet) getDerivedProperty("drops").getLinkedValue();
     }
 
     // ------------------------------------------------------------------------
@@ -296,6 +297,112 @@ public class MobType {
         }
     }
 
+    // ------------------------------------------------------------------------
+    /**
+     * Return the bitmask of behaviours configured for this mob type,
+     * including inherited property values.
+     *
+     * The mask is recomputed lazily after any mob property changes.
+     *
+     * @return the bitwise OR of the HAS_* constants for properties that are
+     *         set.
+     */
+    public int getBehaviours() {
+        if (_behavioursGeneration != _behaviourChanges) {
+            _behaviours = computeBehaviours();
+            _behavioursGeneration = _behaviourChanges;
+        }
+        return _behaviours;
+    }
+
+    // ------------------------------------------------------------------------
+    /**
+     * Return true if this mob type has any of the specified behaviours.
+     *
+     * @param behaviours the bitwise OR of HAS_* constants.
+     * @return true if this mob type has any of the specified behaviours.
+     */
+    public boolean hasBehaviour(int behaviours) {
+        return (getBehaviours() & behaviours) != 0;
+    }
+
+    // ------------------------------------------------------------------------
+    /**
+     * Signify that a mob property has changed, so that the behaviours of all
+     * mob types are recomputed on next use.
+     *
+     * All mob types are invalidated because a change to a mob type changes the
+     * derived properties of its descendants.
+     */
+    public static void invalidateBehaviours() {
+        ++_behaviourChanges;
+    }
+
+    // ------------------------------------------------------------------------
+    /**
+     * Compute the bitmask of behaviours configured for this mob type.
+     *
+     * @return the bitwise OR of the HAS_* constants for properties that are
+     *         set.
+     */
+    protected int computeBehaviours() {
+        int behaviours = 0;
+        if (isSet("support-mobs")) {
+            behaviours |= HAS_SUPPORT;
+        }
+        if (isSet("projectile-hurt-sound") || isSet("melee-hurt-sound")) {
+            behaviours |= HAS_HURT_SOUNDS;
+        }
+        if (isSet("projectile-immunity-percent")) {
+            behaviours |= HAS_PROJECTILE_IMMUNITY;
+        }
+        if (isSet("hurt-potions")) {
+            behaviours |= HAS_HURT_POTIONS;
+        }
+        if (isSet("hurt-teleport-percent")) {
+            behaviours |= HAS_HURT_TELEPORT;
+        }
+        if (isSet("projectile-mobs")) {
+            behaviours |= HAS_PROJECTILE_MOBS;
+        }
+        if (isSet("projectile-disguise") || isSet("projectile-launch-sound")) {
+            behaviours |= HAS_PROJECTILE_LAUNCH;
+        }
+        if (Boolean.TRUE.equals(getDerivedProperty("projectile-removed").getValue())) {
+            behaviours |= HAS_PROJECTILE_REMOVED;
+        }
+        if (Boolean.TRUE.equals(getDerivedProperty("target-damager").getValue())) {
+            behaviours |= HAS_TARGET_DAMAGER;
+        }
+        if (isSet("attack-potions")) {
+            behaviours |= HAS_ATTACK_POTIONS;
+        }
+        if (isSet("melee-attack-sound")) {
+            behaviours |= HAS_ATTACK_SOUND;
+        }
+        if (isSet("sonic-boom-damage-scale")) {
+            behaviours |= HAS_SONIC_BOOM_SCALE;
+        }
+        if (Boolean.FALSE.equals(getDerivedProperty("slime-can-split").getValue())) {
+            behaviours |= HAS_NO_SLIME_SPLIT;
+        }
+        if (isSet("teleport-sound")) {
+            behaviours |= HAS_TELEPORT_SOUND;
+        }
+        return behaviours;
+    }
+
+    // ------------------------------------------------------------------------
+    /**
+     * Return true if the derived value of the specified property is non-null.
+     *
+     * @param id the property ID.
+     * @return true if the derived value of the specified property is non-null.
+     */
+    protected boolean isSet(String id) {
+        return getDerivedProperty(id).getValue() != null;
+    }
+
     // ------------------------------------------------------------------------
     /**
      * Load this mob type from the specified section.
@@ -318,6 +425,31 @@ public class MobType {
         return true;
     }
 
+    // ------------------------------------------------------------------------
+    /**
+     * Resolve the parent type ID and all property values that refer to other
+     * configured objects by ID.
+     *
+     * @see nu.nerd.beastmaster.ILinkable#link(java.util.logging.Logger)
+     */
+    @Override
+    public void link(Logger logger) {
+        invalidateBehaviours();
+        _parentType = null;
+        String parentTypeId = getParentTypeId();
+        if (parentTypeId != null) {
+            BeastMaster.LINKS.addDependency(this, parentTypeId);
+            _parentType = BeastMaster.MOBS.getMobType(parentTypeId);
+            if (_parentType == null) {
+                logger.warning("Mob type " + _id + " has unknown parent type " + parentTypeId + ".");
+            }
+        }
+
+        for (MobProperty property : getAllProperties()) {
+            property.link(logger);
+        }
+    }
+
     // ------------------------------------------------------------------------
     /**
      * Save this mob type as a child of the specified parent configuration
@@ -341,9 +473,9 @@ public class MobType {
      * @param mob the mob.
      */
     public void configureMob(LivingEntity mob) {
-        EntityMeta.api().set(mob, BeastMaster.PLUGIN, "mob-type", getId());
+        BeastMaster.ENTITY_DATA.setMobTypeId(mob, getId());
 
-        for (String propertyId : getAllPropertyIds()) {
+        for (String propertyId : _properties.keySet()) {
             getDerivedProperty(propertyId).configureMob(mob, BeastMaster.PLUGIN.getLogger());
         }
     }
@@ -432,16 +564,15 @@ public class MobType {
                     }
 
                     // The passenger property may be a loot table or a mob type.
-                    String id = (String) getDerivedProperty("passenger").getValue();
-                    DropSet drops = BeastMaster.LOOTS.getDropSet(id);
+                    Object passengerType = getDerivedProperty("passenger").getLinkedValue();
                     MobType mobType = null;
-                    if (drops != null) {
-                        Drop drop = drops.chooseOneDrop(true);
+                    if (passengerType instanceof DropSet) {
+                        Drop drop = ((DropSet) passengerType).chooseOneDrop(true);
                         if (drop.getDropType() == DropType.MOB) {
-                            mobType = BeastMaster.MOBS.getMobType(drop.getId());
+                            mobType = drop.getMobType();
                         }
-                    } else {
-                        mobType = BeastMaster.MOBS.getMobType(id);
+                    } else if (passengerType instanceof MobType) {
+                        mobType = (MobType) passengerType;
                     }
 
                     if (mobType != null) {
@@ -586,8 +717,7 @@ public class MobType {
                 }));
         addProperty(new MobProperty("potion-buffs", DataType.POTION_SET,
                 (mob, logger) -> {
-                    String potionSetId = (String) getDerivedProperty("potion-buffs").getValue();
-                    PotionSet potionSet = BeastMaster.POTIONS.getPotionSet(potionSetId);
+                    PotionSet potionSet = (PotionSet) getDerivedProperty("potion-buffs").getLinkedValue();
                     if (potionSet != null) {
                         potionSet.apply(mob);
                     }
@@ -599,8 +729,7 @@ public class MobType {
 
         addProperty(new MobProperty("helmet", DataType.LOOT_OR_ITEM,
                 (mob, logger) -> {
-                    String id = (String) getDerivedProperty("helmet").getValue();
-                    ItemStack itemStack = getEquipmentItem(id);
+                    ItemStack itemStack = getEquipmentItem(getDerivedProperty("helmet").getLinkedValue());
                     if (itemStack != null) {
                         mob.getEquipment().setHelmet(itemStack);
                     }
@@ -612,8 +741,7 @@ public class MobType {
                 }));
         addProperty(new MobProperty("chest-plate", DataType.LOOT_OR_ITEM,
                 (mob, logger) -> {
-                    String id = (String) getDerivedProperty("chest-plate").getValue();
-                    ItemStack itemStack = getEquipmentItem(id);
+                    ItemStack itemStack = getEquipmentItem(getDerivedProperty("chest-plate").getLinkedValue());
                     if (itemStack != null) {
                         mob.getEquipment().setChestplate(itemStack);
                     }
@@ -625,8 +753,7 @@ public class MobType {
                 }));
         addProperty(new MobProperty("leggings", DataType.LOOT_OR_ITEM,
                 (mob, logger) -> {
-                    String id = (String) getDerivedProperty("leggings").getValue();
-                    ItemStack itemStack = getEquipmentItem(id);
+                    ItemStack itemStack = getEquipmentItem(getDerivedProperty("leggings").getLinkedValue());
                     if (itemStack != null) {
                         mob.getEquipment().setLeggings(itemStack);
                     }
@@ -638,8 +765,7 @@ public class MobType {
                 }));
         addProperty(new MobProperty("boots", DataType.LOOT_OR_ITEM,
                 (mob, logger) -> {
-                    String id = (String) getDerivedProperty("boots").getValue();
-                    ItemStack itemStack = getEquipmentItem(id);
+                    ItemStack itemStack = getEquipmentItem(getDerivedProperty("boots").getLinkedValue());
                     if (itemStack != null) {
                         mob.getEquipment().setBoots(itemStack);
                     }
@@ -651,8 +777,7 @@ public class MobType {
                 }));
         addProperty(new MobProperty("main-hand", DataType.LOOT_OR_ITEM,
                 (mob, logger) -> {
-                    String id = (String) getDerivedProperty("main-hand").getValue();
-                    ItemStack itemStack = getEquipmentItem(id);
+                    ItemStack itemStack = getEquipmentItem(getDerivedProperty("main-hand").getLinkedValue());
                     if (itemStack != null) {
                         mob.getEquipment().setItemInMainHand(itemStack);
                     }
@@ -664,8 +789,7 @@ public class MobType {
                 }));
         addProperty(new MobProperty("off-hand", DataType.LOOT_OR_ITEM,
                 (mob, logger) -> {
-                    String id = (String) getDerivedProperty("off-hand").getValue();
-                    ItemStack itemStack = getEquipmentItem(id);
+                    ItemStack itemStack = getEquipmentItem(getDerivedProperty("off-hand").getLinkedValue());
                     if (itemStack != null) {
                         mob.getEquipment().setItemInOffHand(itemStack);
                     }
@@ -762,31 +886,119 @@ public class MobType {
      *
      * Mob properties corresponding to equipment items (helmet, chest-plate,
      * leggings, boots, main-hand, off-hand) are Strings that are interpreted as
-     * either the ID of a {@link DropSet} or the ID of an {@link Item}. This
-     * method attempts to look up the DropSet first, and if one with the
-     * specified ID doesn't exist, the ID is interpreted as that of an Item.
+     * either the ID of a {@link DropSet} or the ID of an {@link Item}. The
+     * link phase looks up the DropSet first, and if one with the specified ID
+     * doesn't exist, the ID is interpreted as that of an Item.
      *
-     * @param id the ID of the DropSet or Item to generate.
+     * @param lootOrItem the linked DropSet or Item to generate.
      * @return the equipment as an ItemStack, or null if the equipment should
      *         not change (be default).
      */
-    protected static ItemStack getEquipmentItem(String id) {
-        DropSet drops = BeastMaster.LOOTS.getDropSet(id);
-        if (drops != null) {
-            Drop drop = drops.chooseOneDrop(true);
+    protected static ItemStack getEquipmentItem(Object lootOrItem) {
+        if (lootOrItem instanceof DropSet) {
+            Drop drop = ((DropSet) lootOrItem).chooseOneDrop(true);
             if (drop.getDropType() == DropType.NOTHING) {
                 return new ItemStack(Material.AIR);
             } else if (drop.getDropType() == DropType.ITEM) {
                 return drop.randomItemStack();
             }
             return null;
+        } else if (lootOrItem instanceof Item) {
+            ItemStack itemStack = ((Item) lootOrItem).getItemStack();
+            return (itemStack != null) ? itemStack.clone() : null;
         } else {
-            Item item = BeastMaster.ITEMS.getItem(id);
-            return (item != null) ? item.getItemStack().clone() : null;
+            return null;
         }
     }
 
     // ------------------------------------------------------------------------
+    /**
+     * Behaviour flag: "support-mobs" is set.
+     */
+    public static final int HAS_SUPPORT = 1 << 0;
+
+    /**
+     * Behaviour flag: "projectile-hurt-sound" or "melee-hurt-sound" is set.
+     */
+    public static final int HAS_HURT_SOUNDS = 1 << 1;
+
+    /**
+     * Behaviour flag: "projectile-immunity-percent" is set.
+     */
+    public static final int HAS_PROJECTILE_IMMUNITY = 1 << 2;
+
+    /**
+     * Behaviour flag: "hurt-potions" is set.
+     */
+    public static final int HAS_HURT_POTIONS = 1 << 3;
+
+    /**
+     * Behaviour flag: "hurt-teleport-percent" is set.
+     */
+    public static final int HAS_HURT_TELEPORT = 1 << 4;
+
+    /**
+     * Behaviour flag: "projectile-mobs" is set.
+     */
+    public static final int HAS_PROJECTILE_MOBS = 1 << 5;
+
+    /**
+     * Behaviour flag: "projectile-disguise" or "projectile-launch-sound" is
+     * set.
+     */
+    public static final int HAS_PROJECTILE_LAUNCH = 1 << 6;
+
+    /**
+     * Behaviour flag: "projectile-removed" is true.
+     */
+    public static final int HAS_PROJECTILE_REMOVED = 1 << 7;
+
+    /**
+     * Behaviour flag: "target-damager" is true.
+     */
+    public static final int HAS_TARGET_DAMAGER = 1 << 8;
+
+    /**
+     * Behaviour flag: "attack-potions" is set.
+     */
+    public static final int HAS_ATTACK_POTIONS = 1 << 9;
+
+    /**
+     * Behaviour flag: "melee-attack-sound" is set.
+     */
+    public static final int HAS_ATTACK_SOUND = 1 << 10;
+
+    /**
+     * Behaviour flag: "sonic-boom-damage-scale" is set.
+     */
+    public static final int HAS_SONIC_BOOM_SCALE = 1 << 11;
+
+    /**
+     * Behaviour flag: "slime-can-split" is false.
+     */
+    public static final int HAS_NO_SLIME_SPLIT = 1 << 12;
+
+    /**
+     * Behaviour flag: "teleport-sound" is set.
+     */
+    public static final int HAS_TELEPORT_SOUND = 1 << 13;
+
+    /**
+     * Behaviours handled when a mob is damaged.
+     */
+    public static final int ON_DAMAGE = HAS_SUPPORT | HAS_HURT_SOUNDS | HAS_PROJECTILE_IMMUNITY |
+                                        HAS_HURT_POTIONS | HAS_HURT_TELEPORT;
+
+    /**
+     * Behaviours handled when a mob attacks.
+     */
+    public static final int ON_ATTACK = HAS_ATTACK_POTIONS | HAS_ATTACK_SOUND | HAS_SONIC_BOOM_SCALE;
+
+    /**
+     * Behaviours handled when a mob launches a projectile.
+     */
+    public static final int ON_PROJECTILE_LAUNCH = HAS_PROJECTILE_MOBS | HAS_PROJECTILE_LAUNCH;
+
     /**
      * The set of property names that are immutable for predefined Mob Types.
      */
@@ -812,4 +1024,27 @@ public class MobType {
      * {@link #addProperties()}.
      */
     protected LinkedHashMap<String, MobProperty> _properties = new LinkedHashMap<>();
+
+    /**
+     * The parent mob type, resolved from the "parent-type" property when this
+     * mob type is linked.
+     */
+    protected MobType _parentType;
+
+    /**
+     * The number of mob property changes so far, across all mob types.
+     */
+    protected static int _behaviourChanges;
+
+    /**
+     * The cached behaviour bitmask; valid when {@link #_behavioursGeneration}
+     * equals {@link #_behaviourChanges}.
+     */
+    protected int _behaviours;
+
+    /**
+     * The value of {@link #_behaviourChanges} when {@link #_behaviours} was
+     * computed; initially out of date.
+     */
+    protected int _behavioursGeneration = -1;
 } // class MobType
@@ -2,6 +2,7 @@ package nu.nerd.beastmaster.mobs;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.EnumMap;
 import java.util.LinkedHashMap;
 import java.util.TreeMap;
 import java.util.logging.Logger;
@@ -54,11 +55,20 @@ public class MobTypeManager {
     /**
      * Return the MobType corresponding to the specified EntityType.
      * 
+     * The result is cached, since this is called for every spawned mob.
+     * 
      * @param entityType the entity type.
      * @return the corresponding vanilla MobType.
      */
     public MobType getMobType(EntityType entityType) {
-        return getMobType(getMobTypeId(entityType));
+        MobType mobType = _entityTypeToType.get(entityType);
+        if (mobType == null) {
+            mobType = getMobType(getMobTypeId(entityType));
+            if (mobType != null) {
+                _entityTypeToType.put(entityType, mobType);
+            }
+        }
+        return mobType;
     }
 
     // ------------------------------------------------------------------------
@@ -120,7 +130,13 @@ public class MobTypeManager {
      * The type should not be previously registered.
      */
     public void addMobType(MobType type) {
-        _idToType.put(type.getId().toLowerCase(), type);
+        MobType old = _idToType.put(type.getId().toLowerCase(), type);
+        if (old != null && old != type) {
+            BeastMaster.LINKS.forget(old);
+        }
+        _entityTypeToType.clear();
+        BeastMaster.LINKS.markDirty(type);
+        BeastMaster.LINKS.redefined(type.getId());
     }
 
     // ------------------------------------------------------------------------
@@ -130,7 +146,12 @@ public class MobTypeManager {
      * @param id the ID of the type to remove.
      */
     public void removeMobType(String id) {
-        _idToType.remove(id.toLowerCase());
+        MobType old = _idToType.remove(id.toLowerCase());
+        if (old != null) {
+            BeastMaster.LINKS.forget(old);
+        }
+        _entityTypeToType.clear();
+        BeastMaster.LINKS.redefined(id);
     }
 
     // ------------------------------------------------------------------------
@@ -200,6 +221,7 @@ public class MobTypeManager {
         updateAllowedMobEntityTypes();
 
         _idToType.clear();
+        _entityTypeToType.clear();
         for (EntityType entityType : _allowedMobEntityTypes.values()) {
             addMobType(new MobType(getMobTypeId(entityType), entityType, true));
         }
@@ -227,6 +249,12 @@ public class MobTypeManager {
      */
     protected LinkedHashMap<String, MobType> _idToType = new LinkedHashMap<>();
 
+    /**
+     * Cache of the predefined {@link MobType} corresponding to each
+     * EntityType, cleared whenever mob types are added or removed.
+     */
+    protected EnumMap<EntityType, MobType> _entityTypeToType = new EnumMap<>(EntityType.class);
+
     /**
      * Map from MobType ID to EntityType of the predefined vanilla mob types.
      * 
@@ -8,8 +8,8 @@ import org.bukkit.Particle;
 import org.bukkit.Sound;
 import org.bukkit.World;
 import org.bukkit.block.Block;
-import org.bukkit.entity.Entity;
 import org.bukkit.entity.Player;
+import org.bukkit.util.BoundingBox;
 
 // ----------------------------------------------------------------------------
 /**
@@ -24,12 +24,25 @@ public class Objective {
      *
      * @param objectiveType the type of this Objective.
      * @param loc           the location of the objective.
-     * @param lifeTicks     the number of ticks this objective should live.
+     * @param expiryTick    the {@link ObjectiveManager#getTick()} when this
+     *                      objective times out; ignored if the objective type
+     *                      is immortal.
      */
-    public Objective(ObjectiveType objectiveType, Location loc, int lifeTicks) {
+    public Objective(ObjectiveType objectiveType, Location loc, long expiryTick) {
         _objectiveType = objectiveType;
         _location = loc.clone();
-        _lifeTicks = lifeTicks;
+        _expiryTick = objectiveType.isImmortal() ? Long.MAX_VALUE : expiryTick;
+        _reachBox = BoundingBox.of(_location, REACH, REACH, REACH);
+    }
+
+    // ------------------------------------------------------------------------
+    /**
+     * Return the type of this objective.
+     *
+     * @return the type of this objective.
+     */
+    public ObjectiveType getObjectiveType() {
+        return _objectiveType;
     }
 
     // ------------------------------------------------------------------------
@@ -59,28 +72,54 @@ public class Objective {
      * @return the remaining life time in ticks.
      */
     public int getLifeInTicks() {
-        return _lifeTicks;
+        return isImmortal() ? Integer.MAX_VALUE
+                            : (int) Math.max(0, _expiryTick - BeastMaster.OBJECTIVES.getTick());
     }
 
     // ------------------------------------------------------------------------
     /**
-     * Return true if the objective is still alive (has not been found or timed
-     * out).
+     * Return the {@link ObjectiveManager#getTick()} when this objective times
+     * out, or Long.MAX_VALUE if it is immortal.
      *
-     * This method is intended to be called once per tick for each objective in
-     * existence. It also updates particle effects around the objective.
+     * @return the tick when this objective times out.
+     */
+    public long getExpiryTick() {
+        return _expiryTick;
+    }
+
+    // ------------------------------------------------------------------------
+    /**
+     * Return true if this objective never times out.
+     *
+     * @return true if this objective never times out.
+     */
+    public boolean isImmortal() {
+        return _expiryTick == Long.MAX_VALUE;
+    }
+
+    // ------------------------------------------------------------------------
+    /**
+     * Return true if a player's bounding box is close enough to find this
+     * objective.
+     *
+     * @param playerBox the player's bounding box.
+     * @return true if the player is within reach of this objective.
+     */
+    public boolean isWithinReach(BoundingBox playerBox) {
+        return _reachBox.overlaps(playerBox);
+    }
+
+    // ------------------------------------------------------------------------
+    /**
+     * Spawn particle effects around the objective, at most once per tick.
      *
-     * @return true if the objective is still alive (has not been found or timed
-     *         out).
-     */
-    public boolean isAlive() {
-        if (!_objectiveType.isImmortal()) {
-            --_lifeTicks;
-            if (_lifeTicks <= 0) {
-                BeastMaster.PLUGIN.getLogger().info("Objective at " + Util.formatLocation(_location) + " timed out.");
-                return false;
-            }
+     * @param tick the current {@link ObjectiveManager#getTick()}.
+     */
+    public void spawnParticles(long tick) {
+        if (tick == _particleTick) {
+            return;
         }
+        _particleTick = tick;
 
         _location.getWorld().spawnParticle(Particle.BLOCK, _location,
                 _objectiveType.getParticleCount(),
@@ -88,14 +127,14 @@ public class Objective {
                 _objectiveType.getParticleRadius(),
                 _objectiveType.getParticleRadius(),
                 Material.GLOWSTONE);
+    }
 
-        for (Entity entity : _location.getWorld().getNearbyEntities(_location, 2, 2, 2)) {
-            if (entity instanceof Player) {
-                spawnLoot((Player) entity);
-                return false;
-            }
-        }
-        return true;
+    // ------------------------------------------------------------------------
+    /**
+     * Log that the objective timed out.
+     */
+    public void logTimeOut() {
+        BeastMaster.PLUGIN.getLogger().info("Objective at " + Util.formatLocation(_location) + " timed out.");
     }
 
     // ------------------------------------------------------------------------
@@ -123,6 +162,12 @@ public class Objective {
     }
 
     // ------------------------------------------------------------------------
+    /**
+     * The distance from the objective location, along each axis, within which
+     * a player finds the objective.
+     */
+    public static final double REACH = 2;
+
     /**
      * The type of this objective.
      */
@@ -134,7 +179,17 @@ public class Objective {
     protected Location _location;
 
     /**
-     * The number of ticks this objective should live.
+     * The tick when this objective times out, or Long.MAX_VALUE if immortal.
+     */
+    protected long _expiryTick;
+
+    /**
+     * The tick when particles were last spawned.
+     */
+    protected long _particleTick = -1;
+
+    /**
+     * The box that a player must overlap to find this objective.
      */
-    protected int _lifeTicks;
+    protected BoundingBox _reachBox;
 } // class Objective
@@ -0,0 +1,244 @@
+package nu.nerd.beastmaster.objectives;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.function.Consumer;
+
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.block.Block;
+import org.bukkit.entity.Player;
+import org.bukkit.util.BoundingBox;
+
+import nu.nerd.beastmaster.LongObjectMap;
+import nu.nerd.beastmaster.Util;
+
+// ----------------------------------------------------------------------------
+/**
+ * A spatial index of {@link Objective}s, hashed by chunk coordinates in each
+ * world.
+ *
+ * Lookups examine only the few chunks around a query position, so finding the
+ * objectives near a player costs the same regardless of how many objectives
+ * exist elsewhere.
+ *
+ * Objectives are also indexed by packed block coordinates, for lookup by
+ * block. A bitmap with one bit per hashed chunk is consulted first, so lookups
+ * in chunks without objectives cost a single bit test.
+ */
+public class ObjectiveIndex {
+    // ------------------------------------------------------------------------
+    /**
+     * Add an objective to the index.
+     *
+     * @param objective the objective.
+     */
+    public void add(Objective objective) {
+        Location loc = objective.getLocation();
+        HashMap<Long, ArrayList<Objective>> chunks = _worlds.computeIfAbsent(loc.getWorld(), w -> new HashMap<>());
+        chunks.computeIfAbsent(Util.chunkKey(loc.getBlockX() >> 4, loc.getBlockZ() >> 4), k -> new ArrayList<>())
+        .add(objective);
+
+        _blocks.computeIfAbsent(loc.getWorld(), w -> new LongObjectMap<>())
+        .put(Util.blockKey(loc.getBlockX(), loc.getBlockY(), loc.getBlockZ()), objective);
+        int bit = chunkBit(loc.getWorld(), loc.getBlockX() >> 4, loc.getBlockZ() >> 4);
+        if (_chunkCounts[bit]++ == 0) {
+            _chunkBits[bit >>> 6] |= 1L << bit;
+        }
+    }
+
+    // ------------------------------------------------------------------------
+    /**
+     * Remove an objective from the index.
+     *
+     * @param objective the objective.
+     */
+    public void remove(Objective objective) {
+        Location loc = objective.getLocation();
+        HashMap<Long, ArrayList<Objective>> chunks = _worlds.get(loc.getWorld());
+        if (chunks == null) {
+            return;
+        }
+
+        long key = Util.chunkKey(loc.getBlockX() >> 4, loc.getBlockZ() >> 4);
+        ArrayList<Objective> objectives = chunks.get(key);
+        if (objectives == null || !objectives.remove(objective)) {
+            return;
+        }
+        if (objectives.isEmpty()) {
+            chunks.remove(key);
+            if (chunks.isEmpty()) {
+                _worlds.remove(loc.getWorld());
+            }
+        }
+
+        LongObjectMap<Objective> blocks = _blocks.get(loc.getWorld());
+        blocks.remove(Util.blockKey(loc.getBlockX(), loc.getBlockY(), loc.getBlockZ()));
+        if (blocks.isEmpty()) {
+            _blocks.remove(loc.getWorld());
+        }
+        int bit = chunkBit(loc.getWorld(), loc.getBlockX() >> 4, loc.getBlockZ() >> 4);
+        if (--_chunkCounts[bit] == 0) {
+            _chunkBits[bit >>> 6] &= ~(1L << bit);
+        }
+    }
+
+    // ------------------------------------------------------------------------
+    /**
+     * Return the objective at the specified block, or null if there is none.
+     *
+     * @param block the block.
+     * @return the objective at the block, or null.
+     */
+    public Objective get(Block block) {
+        World world = block.getWorld();
+        int bit = chunkBit(world, block.getX() >> 4, block.getZ() >> 4);
+        if ((_chunkBits[bit >>> 6] & (1L << bit)) == 0) {
+            return null;
+        }
+
+        LongObjectMap<Objective> blocks = _blocks.get(world);
+        return (blocks != null) ? blocks.get(Util.blockKey(block.getX(), block.getY(), block.getZ())) : null;
+    }
+
+    // ------------------------------------------------------------------------
+    /**
+     * Remove all objectives from the index.
+     */
+    public void clear() {
+        _worlds.clear();
+        _blocks.clear();
+        Arrays.fill(_chunkCounts, 0);
+        Arrays.fill(_chunkBits, 0);
+    }
+
+    // ------------------------------------------------------------------------
+    /**
+     * Return true if there are no objectives in the specified world.
+     *
+     * @param world the world.
+     * @return true if there are no objectives in the specified world.
+     */
+    public boolean isEmpty(World world) {
+        return !_worlds.containsKey(world);
+    }
+
+    // ------------------------------------------------------------------------
+    /**
+     * Return an objective within reach of the specified player, or null if
+     * there is none.
+     *
+     * @param player the player.
+     * @return an objective within reach of the player, or null.
+     */
+    public Objective findReachable(Player player) {
+        HashMap<Long, ArrayList<Objective>> chunks = _worlds.get(player.getWorld());
+        if (chunks == null) {
+            return null;
+        }
+
+        BoundingBox box = player.getBoundingBox();
+        int minChunkX = (int) Math.floor(box.getMinX() - Objective.REACH) >> 4;
+        int maxChunkX = (int) Math.floor(box.getMaxX() + Objective.REACH) >> 4;
+        int minChunkZ = (int) Math.floor(box.getMinZ() - Objective.REACH) >> 4;
+        int maxChunkZ = (int) Math.floor(box.getMaxZ() + Objective.REACH) >> 4;
+        for (int chunkX = minChunkX; chunkX <= maxChunkX; ++chunkX) {
+            for (int chunkZ = minChunkZ; chunkZ <= maxChunkZ; ++chunkZ) {
+                ArrayList<Objective> objectives = chunks.get(Util.chunkKey(chunkX, chunkZ));
+                if (objectives != null) {
+                    for (Objective objective : objectives) {
+                        if (objective.isWithinReach(box)) {
+                            return objective;
+                        }
+                    }
+                }
+            }
+        }
+        return null;
+    }
+
+    // ------------------------------------------------------------------------
+    /**
+     * Call a function for each objective within a horizontal range of a
+     * location.
+     *
+     * @param loc    the location.
+     * @param range  the maximum horizontal distance from the location.
+     * @param action the function to call.
+     */
+    public void forEachWithin(Location loc, double range, Consumer<Objective> action) {
+        HashMap<Long, ArrayList<Objective>> chunks = _worlds.get(loc.getWorld());
+        if (chunks == null) {
+            return;
+        }
+
+        double rangeSquared = range * range;
+        int minChunkX = (int) Math.floor(loc.getX() - range) >> 4;
+        int maxChunkX = (int) Math.floor(loc.getX() + range) >> 4;
+        int minChunkZ = (int) Math.floor(loc.getZ() - range) >> 4;
+        int maxChunkZ = (int) Math.floor(loc.getZ() + range) >> 4;
+        for (int chunkX = minChunkX; chunkX <= maxChunkX; ++chunkX) {
+            for (int chunkZ = minChunkZ; chunkZ <= maxChunkZ; ++chunkZ) {
+                ArrayList<Objective> objectives = chunks.get(Util.chunkKey(chunkX, chunkZ));
+                if (objectives != null) {
+                    for (Objective objective : objectives) {
+                        Location objLoc = objective.getLocation();
+                        double dX = objLoc.getX() - loc.getX();
+                        double dZ = objLoc.getZ() - loc.getZ();
+                        if (dX * dX + dZ * dZ <= rangeSquared) {
+                            action.accept(objective);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    // ------------------------------------------------------------------------
+    /**
+     * Return the index of the bit in {@link #_chunkBits} for a chunk.
+     *
+     * @param world  the world.
+     * @param chunkX the chunk X coordinate.
+     * @param chunkZ the chunk Z coordinate.
+     * @return the bit index.
+     */
+    protected static int chunkBit(World world, int chunkX, int chunkZ) {
+        long hash = (Util.chunkKey(chunkX, chunkZ) ^ world.hashCode()) * 0x9E3779B97F4A7C15L;
+        return (int) (hash >>> (64 - CHUNK_BITS_LOG2));
+    }
+
+    // ------------------------------------------------------------------------
+    /**
+     * Base 2 logarithm of the number of bits in {@link #_chunkBits}.
+     */
+    protected static final int CHUNK_BITS_LOG2 = 12;
+
+    /**
+     * Map from World to map from chunk key to the objectives in that chunk.
+     *
+     * Empty lists and maps are removed, so a world is present only if it
+     * contains objectives.
+     */
+    protected HashMap<World, HashMap<Long, ArrayList<Objective>>> _worlds = new HashMap<>();
+
+    /**
+     * Map from World to map from packed block coordinates to the objective at
+     * that block.
+     */
+    protected HashMap<World, LongObjectMap<Objective>> _blocks = new HashMap<>();
+
+    /**
+     * Number of objectives in chunks hashing to each bit of
+     * {@link #_chunkBits}.
+     */
+    protected int[] _chunkCounts = new int[1 << CHUNK_BITS_LOG2];
+
+    /**
+     * Bitmap with a set bit for each chunk hash with a non-zero count in
+     * {@link #_chunkCounts}.
+     */
+    protected long[] _chunkBits = new long[(1 << CHUNK_BITS_LOG2) / 64];
+
+} // class ObjectiveIndex
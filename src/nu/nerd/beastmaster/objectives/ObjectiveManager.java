@@ -1,42 +1,38 @@
 package nu.nerd.beastmaster.objectives;
 
-import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.Iterator;
-import java.util.Map.Entry;
+import java.util.WeakHashMap;
+import java.util.function.Consumer;
 
 import org.bukkit.Bukkit;
+import org.bukkit.Chunk;
+import org.bukkit.ChunkSnapshot;
 import org.bukkit.Location;
 import org.bukkit.Material;
 import org.bukkit.World;
 import org.bukkit.block.Block;
+import org.bukkit.entity.Player;
 import org.bukkit.util.Vector;
 
 import com.sk89q.worldedit.EditSession;
-import com.sk89q.worldedit.EmptyClipboardException;
-import com.sk89q.worldedit.LocalSession;
-import com.sk89q.worldedit.MaxChangedBlocksException;
 import com.sk89q.worldedit.WorldEdit;
+import com.sk89q.worldedit.WorldEditException;
 import com.sk89q.worldedit.bukkit.BukkitWorld;
 import com.sk89q.worldedit.bukkit.WorldEditPlugin;
 import com.sk89q.worldedit.extent.clipboard.Clipboard;
-import com.sk89q.worldedit.extent.clipboard.io.ClipboardFormat;
-import com.sk89q.worldedit.extent.clipboard.io.ClipboardFormats;
-import com.sk89q.worldedit.extent.clipboard.io.ClipboardReader;
+import com.sk89q.worldedit.function.operation.Operations;
 import com.sk89q.worldedit.math.BlockVector3;
 import com.sk89q.worldedit.math.transform.AffineTransform;
 import com.sk89q.worldedit.session.ClipboardHolder;
-import com.sk89q.worldedit.util.io.Closer;
-import com.sk89q.worldedit.world.DataException;
 
 import nu.nerd.beastmaster.BeastMaster;
+import nu.nerd.beastmaster.Configuration;
+import nu.nerd.beastmaster.TimingWheel;
 import nu.nerd.beastmaster.Util;
 import nu.nerd.beastmaster.zones.Zone;
 
@@ -84,6 +80,55 @@ public class ObjectiveManager {
         }
     } // extractSchematics
 
+    // ------------------------------------------------------------------------
+    /**
+     * Load persisted objectives.
+     *
+     * Objectives are restored when their chunks load, by
+     * {@link #restoreObjectives(Chunk)}.
+     */
+    public void load() {
+        _store.open(new File(BeastMaster.PLUGIN.getDataFolder(), "objectives.dat"), BeastMaster.PLUGIN.getLogger());
+    }
+
+    // ------------------------------------------------------------------------
+    /**
+     * Save all objectives, including those not yet restored, with their
+     * remaining life.
+     *
+     * This is called when the plugin is disabled. The objectives are left in
+     * the world.
+     */
+    public void save() {
+        _store.close(_objectives, BeastMaster.PLUGIN.getLogger());
+    }
+
+    // ------------------------------------------------------------------------
+    /**
+     * Restore persisted objectives in a chunk that has loaded.
+     *
+     * The objective marker blocks are already in the world, so they are not
+     * pasted again.
+     *
+     * @param chunk the chunk.
+     */
+    public void restoreObjectives(Chunk chunk) {
+        for (ObjectiveRecord record : _store.takePending(chunk)) {
+            ObjectiveType objectiveType = BeastMaster.OBJECTIVE_TYPES.getObjectiveType(record.getTypeId());
+            long blockKey = record.getBlockKey();
+            Block block = chunk.getWorld().getBlockAt(Util.blockKeyX(blockKey),
+                                                      Util.blockKeyY(blockKey),
+                                                      Util.blockKeyZ(blockKey));
+            if (objectiveType == null) {
+                BeastMaster.PLUGIN.getLogger().warning("Discarding objective of unknown type " + record.getTypeId() +
+                                                       " at " + Util.formatLocation(block.getLocation()));
+                _store.discard(record);
+            } else if (_index.get(block) == null) {
+                register(new Objective(objectiveType, block.getLocation(), getTick() + record.getLifeTicks()));
+            }
+        }
+    }
+
     // ------------------------------------------------------------------------
     /**
      * If the maximum number of extant {@link Objective}s has not been exceeded,
@@ -99,45 +144,96 @@ public class ObjectiveManager {
      * currently exists in the world, or if the objective would be over the
      * world border.
      *
+     * The search for a location runs over several ticks: chunks are loaded
+     * asynchronously and candidate locations are searched in a ChunkSnapshot
+     * off the main thread. Only the final location is checked against
+     * entities, on the main thread.
+     *
      * @param objectiveType the objective type.
      * @param zone the zone whose limits will be obeyed when placing the
      *        objective.
      * @param deathLocation the location where a drop triggered the objective's
      *        spawning.
-     * @return a new Objective if fewer have been spawned than the limit, a
-     *         reference to the oldest objective still in the world old if the
-     *         maximum have been spawned, or null if no objective could be
-     *         spawned.
+     * @param callback called on the main thread with a new Objective if fewer
+     *        have been spawned than the limit, a reference to the oldest
+     *        objective still in the world old if the maximum have been
+     *        spawned, or null if no objective could be spawned.
      */
-    public Objective spawnObjective(ObjectiveType objectiveType, Zone zone, Location deathLocation) {
-        if (_blockToObjective.size() >= objectiveType.getMaxCount()) {
-            return (_objectives.isEmpty()) ? null : Util.randomChoice(_objectives);
+    public void spawnObjective(ObjectiveType objectiveType, Zone zone, Location deathLocation,
+                               Consumer<Objective> callback) {
+        if (_objectives.size() + _pendingSpawns >= objectiveType.getMaxCount()) {
+            callback.accept((_objectives.isEmpty()) ? null : Util.randomChoice(_objectives));
+            return;
         }
 
         // Try a few times to spawn an objective.
-        for (int i = 0; i < 3; ++i) {
-            Objective objective = spawnNewObjective(objectiveType, zone, deathLocation);
-            if (objective != null) {
-                return objective;
-            }
-        }
-        return null;
+        ++_pendingSpawns;
+        spawnNewObjective(objectiveType, zone, deathLocation, 3, objective -> {
+            --_pendingSpawns;
+            callback.accept(objective);
+        });
     } // spawnObjective
 
+    // ------------------------------------------------------------------------
+    /**
+     * Return the number of times {@link #tickAll()} has been called.
+     *
+     * Objective expiry times are expressed in terms of this tick count.
+     *
+     * @return the current tick.
+     */
+    public long getTick() {
+        return _expiries.getTick();
+    }
+
     // ------------------------------------------------------------------------
     /**
      * Tick all objectives in the world, updating particle effects and removing
      * those that were found or timed out.
+     *
+     * Only objectives that expire this tick are examined for expiry. Particles
+     * are spawned every {@link Configuration#OBJECTIVE_PARTICLE_PERIOD} ticks,
+     * and only around objectives within
+     * {@link Configuration#OBJECTIVE_PARTICLE_RANGE} of a player. The
+     * remaining life of objectives is persisted every
+     * {@link #LIFE_CHECKPOINT_PERIOD} ticks.
      */
     public void tickAll() {
-        Iterator<Entry<Block, Objective>> it = _blockToObjective.entrySet().iterator();
-        while (it.hasNext()) {
-            Entry<Block, Objective> entry = it.next();
-            Objective objective = entry.getValue();
-            if (!objective.isAlive()) {
-                objective.vaporise();
-                _objectives.remove(objective);
-                it.remove();
+        _expiries.advance(objective -> {
+            objective.logTimeOut();
+            removeObjective(objective);
+        });
+
+        if (_objectives.isEmpty()) {
+            return;
+        }
+
+        long tick = getTick();
+        if (tick % LIFE_CHECKPOINT_PERIOD == 0) {
+            _store.checkpoint(_objectives, BeastMaster.PLUGIN.getLogger());
+        }
+
+        int particlePeriod = Math.max(1, BeastMaster.CONFIG.OBJECTIVE_PARTICLE_PERIOD);
+        boolean doParticles = (tick % particlePeriod == 0);
+
+        // Only players who have moved since the last check can newly reach
+        // an objective.
+        for (Player player : Bukkit.getOnlinePlayers()) {
+            if (_index.isEmpty(player.getWorld())) {
+                continue;
+            }
+
+            if (hasMoved(player)) {
+                Objective objective = _index.findReachable(player);
+                if (objective != null) {
+                    objective.spawnLoot(player);
+                    removeObjective(objective);
+                }
+            }
+
+            if (doParticles) {
+                _index.forEachWithin(player.getLocation(), BeastMaster.CONFIG.OBJECTIVE_PARTICLE_RANGE,
+                                     objective -> objective.spawnParticles(tick));
             }
         }
     }
@@ -152,13 +248,7 @@ public class ObjectiveManager {
      *         Block.
      */
     public Objective getObjective(Block block) {
-        if (block.getType() == Material.LEGACY_SKULL) { // TODO
-            Objective objective = _blockToObjective.get(block);
-            if (objective != null) {
-                return objective;
-            }
-        }
-        return null;
+        return _index.get(block);
     }
 
     // ------------------------------------------------------------------------
@@ -169,9 +259,11 @@ public class ObjectiveManager {
      * @param objective the Objective.
      */
     public void removeObjective(Objective objective) {
+        _store.removed(objective);
         objective.vaporise();
         _objectives.remove(objective);
-        _blockToObjective.remove(objective.getBlock());
+        _index.remove(objective);
+        _expiries.remove(objective);
     }
 
     // ------------------------------------------------------------------------
@@ -180,10 +272,31 @@ public class ObjectiveManager {
      */
     public void removeAll() {
         for (Objective objective : _objectives) {
+            _store.removed(objective);
             objective.vaporise();
         }
         _objectives.clear();
-        _blockToObjective.clear();
+        _index.clear();
+        _expiries.clear();
+        _lastPlayerLocations.clear();
+    }
+
+    // ------------------------------------------------------------------------
+    /**
+     * Return true if the player has moved since the last call to this method,
+     * and record the player's current location.
+     *
+     * @param player the player.
+     * @return true if the player has moved since the last call.
+     */
+    protected boolean hasMoved(Player player) {
+        Location loc = player.getLocation();
+        Location last = _lastPlayerLocations.put(player, loc);
+        return last == null ||
+               last.getWorld() != loc.getWorld() ||
+               last.getX() != loc.getX() ||
+               last.getY() != loc.getY() ||
+               last.getZ() != loc.getZ();
     }
 
     // ------------------------------------------------------------------------
@@ -250,37 +363,24 @@ public class ObjectiveManager {
      *        world.
      */
     protected void pasteSchematic(File file, Location loc, Vector offset, boolean copyAir, boolean copyEntities)
-    throws DataException, IOException, MaxChangedBlocksException {
-        WorldEdit we = getWorldEdit();
-        EditSession es = we.getEditSessionFactory().getEditSession(new BukkitWorld(loc.getWorld()), -1);
-
-        ClipboardFormat format = ClipboardFormats.findByFile(file);
-        if (format == null) {
+    throws IOException, WorldEditException {
+        Clipboard clipboard = _schematics.getClipboard(file);
+        if (clipboard == null) {
             return;
         }
-        try (Closer closer = Closer.create()) {
-            FileInputStream fileInputStream = closer.register(new FileInputStream(file));
-            BufferedInputStream bufferedInputSteam = closer.register(new BufferedInputStream(fileInputStream));
-            ClipboardReader reader = closer.register(format.getReader(bufferedInputSteam));
-            Clipboard clipboard = reader.read();
-
-            ClipboardHolder holder = new ClipboardHolder(clipboard);
-            LocalSession localSession = new LocalSession();
-
-            AffineTransform transform = new AffineTransform();
-            transform.rotateY(90 * Util.randomInt(4));
-            holder.setTransform(transform);
 
-            localSession.setClipboard(holder);
+        // The cached clipboard is shared; the transform is applied by the
+        // holder as the clipboard is pasted.
+        ClipboardHolder holder = new ClipboardHolder(clipboard);
+        holder.setTransform(new AffineTransform().rotateY(90 * Util.randomInt(4)));
 
-            try {
-                localSession.getClipboard().createPaste(es)
+        WorldEdit we = getWorldEdit();
+        try (EditSession es = we.getEditSessionFactory().getEditSession(new BukkitWorld(loc.getWorld()), -1)) {
+            Operations.complete(holder.createPaste(es)
                 .to(toWEVector(loc.clone().add(offset)))
                 .ignoreAirBlocks(!copyAir)
-                .build();
-            } catch (EmptyClipboardException e) {
-                e.printStackTrace();
-            }
+                .copyEntities(copyEntities)
+                .build());
         }
     }
 
@@ -309,104 +409,175 @@ public class ObjectiveManager {
     // ------------------------------------------------------------------------
     /**
      * Try to spawn a new objective, subject to the constraints listed in the
-     * JavaDoc of {@link #spawnObjective(ObjectiveType, Zone, Location)}.
+     * JavaDoc of
+     * {@link #spawnObjective(ObjectiveType, Zone, Location, Consumer)}.
      * 
      * @param objectiveType the objective type.
      * @param zone the zone whose limits will be obeyed when placing the
      *        objective.
      * @param dropLocation the location where a drop triggered the objective's
      *        spawning.
-     * @return a new objective, or null if it could not be spawned.
+     * @param attempts the number of locations to try.
+     * @param callback called on the main thread with the new objective, or
+     *        null if it could not be spawned.
      */
-    protected Objective spawnNewObjective(ObjectiveType objectiveType, Zone zone, Location dropLocation) {
+    protected void spawnNewObjective(ObjectiveType objectiveType, Zone zone, Location dropLocation,
+                                     int attempts, Consumer<Objective> callback) {
+        if (attempts <= 0) {
+            callback.accept(null);
+            return;
+        }
+        Runnable retry = () -> spawnNewObjective(objectiveType, zone, dropLocation, attempts - 1, callback);
+
         double angleRadians = 2 * Math.PI * Math.random();
         double range = Util.random(objectiveType.getMinRange(), objectiveType.getMaxRange());
         double dX = range * Math.cos(angleRadians);
         double dZ = range * Math.sin(angleRadians);
-
-        World world = dropLocation.getWorld();
-        Block floorBlock = world.getHighestBlockAt((int) (dropLocation.getX() + dX),
-                                                   (int) (dropLocation.getZ() + dZ));
-        Location highestLocation = floorBlock.getLocation();
+        int x = (int) (dropLocation.getX() + dX);
+        int z = (int) (dropLocation.getZ() + dZ);
 
         // TODO: Objectives are officially borked.
         int minX = 0; // zone.getCentreX() - zone.getRadius();
         int maxX = 0; // zone.getCentreX() + zone.getRadius();
         int minZ = 0; // zone.getCentreZ() - zone.getRadius();
         int maxZ = 0; // zone.getCentreZ() + zone.getRadius();
-        int x = highestLocation.getBlockX();
-        int highestY = highestLocation.getBlockY();
-        int z = highestLocation.getBlockZ();
-
-        if (x >= minX && x <= maxX && z >= minZ && z <= maxZ) {
-            // Select a block in the vertical range of the objective type. No
-            // higher than the highest block.
-            int minY = Math.min(objectiveType.getMinY(), highestY);
-            int maxY = Math.min(objectiveType.getMaxY(), highestY);
-            int startY = Util.random(minY, maxY);
-
-            // Scan for an eligible location between startY and maxY. Must be
-            // air and no entities (item frames, paintings) to break.
-            for (int y = startY; y < maxY; ++y) {
-                Block objBlock = world.getBlockAt(x, y, z);
-                if (objBlock.getType() == Material.AIR &&
-                    world.getNearbyEntities(objBlock.getLocation(), 2, 2, 2).isEmpty()) {
-
-                    // While the chosen location is above the minimum Y and it
-                    // is floating in the air, look for a horizontal surface
-                    // below to use instead.
-                    int floorY = getFloorY(objectiveType.getMinY(), world, x, y, z);
-                    objBlock = world.getBlockAt(x, floorY, z);
-                    Location objLocation = objBlock.getLocation();
-
-                    BeastMaster.PLUGIN.getLogger().info("Objective spawned at " + Util.formatLocation(objLocation));
-                    double distance = objLocation.distance(dropLocation);
-                    BeastMaster.PLUGIN.getLogger().info("Distance " + distance);
-                    int travelTicks = 20 * (int) (distance / objectiveType.getMinPlayerSpeed());
-                    BeastMaster.PLUGIN.getLogger().info("Travel ticks " + travelTicks);
-                    int lifeInTicks = objectiveType.getExtraTicks() + travelTicks;
-                    BeastMaster.PLUGIN.getLogger().info("Life in ticks " + lifeInTicks);
-
-                    Objective objective = new Objective(objectiveType, objLocation, lifeInTicks);
-                    _blockToObjective.put(objBlock, objective);
-                    _objectives.add(objective);
-                    markObjective(objectiveType, objLocation);
-                    return objective;
-                }
-            } // for
+        if (x < minX || x > maxX || z < minZ || z > maxZ) {
+            retry.run();
+            return;
         }
-        return null;
+
+        World world = dropLocation.getWorld();
+        int minY = objectiveType.getMinY();
+        int maxY = objectiveType.getMaxY();
+        world.getChunkAtAsync(x >> 4, z >> 4).whenComplete((chunk, ex) -> {
+            if (chunk == null) {
+                retry.run();
+                return;
+            }
+
+            ChunkSnapshot snapshot = chunk.getChunkSnapshot(true, false, false);
+            Bukkit.getScheduler().runTaskAsynchronously(BeastMaster.PLUGIN, () -> {
+                int y = findObjectiveY(snapshot, x & 15, z & 15, minY, maxY);
+                if (!BeastMaster.PLUGIN.isEnabled()) {
+                    return;
+                }
+
+                Bukkit.getScheduler().runTask(BeastMaster.PLUGIN, () -> {
+                    Objective objective = (y == NO_Y) ? null
+                                                      : addObjective(objectiveType, world.getBlockAt(x, y, z),
+                                                                     dropLocation);
+                    if (objective != null) {
+                        callback.accept(objective);
+                    } else {
+                        retry.run();
+                    }
+                });
+            });
+        });
     }
 
     // ------------------------------------------------------------------------
     /**
-     * Return a floor below (x,y,z) that the objective could sit on, provided it
-     * is empty of blocks and entities and at least the minimum Y for the
-     * objective type.
-     * 
-     * @param minY the minimum Y.
-     * @param world the world.
-     * @param x the X coordinate.
-     * @param y the starting Y coordinate for the search; the maximum return
-     *        value.
-     * @param z the Z coordinate.
-     * @return the Y coordinate of the first empty spot below y and above minY
-     *         if there is a floor to sit on, or minY if it is all empty space.
+     * Search a column of a ChunkSnapshot for a place to put an objective.
+     *
+     * A random Y coordinate in the vertical range of the objective type, and
+     * no higher than the highest block, is selected. The column is scanned
+     * upwards from there for air. While that location is above the minimum Y
+     * and it is floating in the air, a horizontal surface below is sought to
+     * use instead.
+     *
+     * This method does not access the world, and so can be called off the
+     * main thread.
+     *
+     * @param snapshot the chunk snapshot, including the heightmap.
+     * @param x the X coordinate within the chunk.
+     * @param z the Z coordinate within the chunk.
+     * @param minTypeY the minimum Y of the objective type.
+     * @param maxTypeY the maximum Y of the objective type.
+     * @return the Y coordinate of the objective, or {@link #NO_Y} if there is
+     *         no suitable location.
      */
-    protected int getFloorY(int minY, World world, int x, int y, int z) {
-        while (y > minY) {
-            Block block = world.getBlockAt(x, y - 1, z);
-            if (block.getType() == Material.AIR &&
-                world.getNearbyEntities(block.getLocation(), 2, 2, 2).isEmpty()) {
-                --y;
-            } else {
-                break;
+    protected static int findObjectiveY(ChunkSnapshot snapshot, int x, int z, int minTypeY, int maxTypeY) {
+        int highestY = snapshot.getHighestBlockYAt(x, z);
+        int minY = Math.min(minTypeY, highestY);
+        int maxY = Math.min(maxTypeY, highestY);
+        int startY = Util.random(minY, maxY);
+        for (int y = startY; y < maxY; ++y) {
+            if (snapshot.getBlockType(x, y, z) == Material.AIR) {
+                while (y > minTypeY && snapshot.getBlockType(x, y - 1, z) == Material.AIR) {
+                    --y;
+                }
+                return y;
             }
         }
-        return y;
+        return NO_Y;
+    }
+
+    // ------------------------------------------------------------------------
+    /**
+     * Add an objective at the specified block, if it is still air and there
+     * are no entities (item frames, paintings) to break.
+     *
+     * @param objectiveType the objective type.
+     * @param objBlock the block where the objective will be.
+     * @param dropLocation the location where a drop triggered the objective's
+     *        spawning.
+     * @return the new objective, or null if it could not be placed.
+     */
+    protected Objective addObjective(ObjectiveType objectiveType, Block objBlock, Location dropLocation) {
+        Location objLocation = objBlock.getLocation();
+        if (objBlock.getType() != Material.AIR ||
+            _index.get(objBlock) != null ||
+            !objBlock.getWorld().getNearbyEntities(objLocation, 2, 2, 2).isEmpty()) {
+            return null;
+        }
+
+        BeastMaster.PLUGIN.getLogger().info("Objective spawned at " + Util.formatLocation(objLocation));
+        double distance = objLocation.distance(dropLocation);
+        BeastMaster.PLUGIN.getLogger().info("Distance " + distance);
+        int travelTicks = 20 * (int) (distance / objectiveType.getMinPlayerSpeed());
+        BeastMaster.PLUGIN.getLogger().info("Travel ticks " + travelTicks);
+        int lifeInTicks = objectiveType.getExtraTicks() + travelTicks;
+        BeastMaster.PLUGIN.getLogger().info("Life in ticks " + lifeInTicks);
+
+        Objective objective = new Objective(objectiveType, objLocation, getTick() + lifeInTicks);
+        register(objective);
+        _store.added(objective);
+        markObjective(objectiveType, objLocation);
+        return objective;
+    }
+
+    // ------------------------------------------------------------------------
+    /**
+     * Add an objective to the data structures that track it.
+     *
+     * @param objective the objective.
+     */
+    protected void register(Objective objective) {
+        _objectives.add(objective);
+        _index.add(objective);
+        if (!objective.isImmortal()) {
+            _expiries.add(objective);
+        }
+
+        // Check all players against the new objective next tick, even if they
+        // are standing still.
+        _lastPlayerLocations.clear();
     }
 
     // ------------------------------------------------------------------------
+    /**
+     * Value returned by
+     * {@link #findObjectiveY(ChunkSnapshot, int, int, int, int)} when there
+     * is no suitable location.
+     */
+    protected static final int NO_Y = Integer.MIN_VALUE;
+
+    /**
+     * Period, in ticks, between records of the remaining life of objectives.
+     */
+    protected static final int LIFE_CHECKPOINT_PERIOD = 1200;
+
     /**
      * A list of schematic file base names built into the plugin JAR.
      */
@@ -422,8 +593,38 @@ public class ObjectiveManager {
     protected ArrayList<Objective> _objectives = new ArrayList<>();
 
     /**
-     * Map from Block to Objective at that block.
+     * The number of objectives whose locations are still being searched for.
+     */
+    protected int _pendingSpawns;
+
+    /**
+     * Spatial index of objectives, used to find objectives near players and
+     * by block.
+     */
+    protected ObjectiveIndex _index = new ObjectiveIndex();
+
+    /**
+     * Cache of parsed objective marker schematics.
+     */
+    protected SchematicCache _schematics = new SchematicCache();
+
+    /**
+     * Persistent store of objectives.
+     */
+    protected ObjectiveStore _store = new ObjectiveStore();
+
+    /**
+     * Timing wheel of mortal objectives, by expiry tick.
+     *
+     * 1024 buckets cover lifetimes of up to 51 seconds in a single revolution.
+     */
+    protected TimingWheel<Objective> _expiries = new TimingWheel<>(10, Objective::getExpiryTick);
+
+    /**
+     * Map from Player to location when last checked for nearby objectives.
+     *
+     * Weak keys allow entries of players who log out to be collected.
      */
-    protected HashMap<Block, Objective> _blockToObjective = new HashMap<Block, Objective>();
+    protected WeakHashMap<Player, Location> _lastPlayerLocations = new WeakHashMap<>();
 
 } // class ObjectiveManager
\ No newline at end of file
@@ -0,0 +1,93 @@
+package nu.nerd.beastmaster.objectives;
+
+import java.util.UUID;
+
+import nu.nerd.beastmaster.Util;
+
+// ----------------------------------------------------------------------------
+/**
+ * The persistent state of an {@link Objective}, as recorded by the
+ * {@link ObjectiveStore}.
+ */
+public class ObjectiveRecord {
+    // ------------------------------------------------------------------------
+    /**
+     * Constructor.
+     *
+     * @param worldId   the UUID of the world containing the objective.
+     * @param blockKey  the packed block coordinates of the objective, as
+     *                  returned by {@link Util#blockKey(int, int, int)}.
+     * @param typeId    the ID of the objective type.
+     * @param lifeTicks the remaining life of the objective in ticks, or -1 if
+     *                  it is immortal.
+     */
+    public ObjectiveRecord(UUID worldId, long blockKey, String typeId, int lifeTicks) {
+        _worldId = worldId;
+        _blockKey = blockKey;
+        _typeId = typeId;
+        _lifeTicks = lifeTicks;
+    }
+
+    // ------------------------------------------------------------------------
+    /**
+     * Return the UUID of the world containing the objective.
+     *
+     * @return the UUID of the world containing the objective.
+     */
+    public UUID getWorldId() {
+        return _worldId;
+    }
+
+    // ------------------------------------------------------------------------
+    /**
+     * Return the packed block coordinates of the objective.
+     *
+     * @return the packed block coordinates of the objective.
+     */
+    public long getBlockKey() {
+        return _blockKey;
+    }
+
+    // ------------------------------------------------------------------------
+    /**
+     * Return the ID of the objective type.
+     *
+     * @return the ID of the objective type.
+     */
+    public String getTypeId() {
+        return _typeId;
+    }
+
+    // ------------------------------------------------------------------------
+    /**
+     * Return the remaining life of the objective in ticks, or -1 if it is
+     * immortal.
+     *
+     * @return the remaining life of the objective in ticks, or -1.
+     */
+    public int getLifeTicks() {
+        return _lifeTicks;
+    }
+
+    // ------------------------------------------------------------------------
+    /**
+     * The UUID of the world containing the objective.
+     */
+    protected UUID _worldId;
+
+    /**
+     * The packed block coordinates of the objective.
+     */
+    protected long _blockKey;
+
+    /**
+     * The ID of the objective type.
+     */
+    protected String _typeId;
+
+    /**
+     * The remaining life of the objective in ticks, or -1 if immortal.
+     */
+    protected int _lifeTicks;
+
+} // class ObjectiveRecord
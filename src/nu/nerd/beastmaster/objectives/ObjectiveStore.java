@@ -0,0 +1,408 @@
+package nu.nerd.beastmaster.objectives;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.UUID;
+import java.util.logging.Logger;
+
+import org.bukkit.Chunk;
+import org.bukkit.Location;
+
+import nu.nerd.beastmaster.Util;
+
+// ----------------------------------------------------------------------------
+/**
+ * Persists {@link Objective}s across restarts in a compact binary file.
+ *
+ * The file is a journal: each objective added or removed appends a small
+ * record, so that changes are written as they happen. The remaining life of
+ * every objective is appended periodically by {@link #checkpoint(Collection,
+ * Logger)}, so that after a crash objectives regain at most one checkpoint
+ * period of life. On startup the journal is replayed, and rewritten
+ * with just the surviving objectives. On shutdown, it is rewritten with the
+ * remaining life of every objective.
+ *
+ * A journal that cannot be read completely is moved aside rather than
+ * overwritten.
+ *
+ * Restored objectives are held as {@link ObjectiveRecord}s, by chunk, until
+ * their chunk loads, so that startup doesn't load the chunks of every
+ * persisted objective.
+ */
+public class ObjectiveStore {
+    // ------------------------------------------------------------------------
+    /**
+     * Load persisted objectives from the journal file and open it for
+     * appending.
+     *
+     * @param file   the journal file.
+     * @param logger the logger.
+     */
+    public void open(File file, Logger logger) {
+        _file = file;
+        _pending.clear();
+
+        HashMap<UUID, LinkedHashMap<Long, ObjectiveRecord>> records = new HashMap<>();
+        boolean readCleanly = true;
+        if (file.isFile()) {
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+                if (in.readInt() != MAGIC || in.readByte() != VERSION) {
+                    logger.warning("Objectives file has an unknown format: " + file);
+                    readCleanly = false;
+                } else {
+                    readRecords(in, records);
+                }
+            } catch (EOFException ex) {
+                // The last record may be truncated by a crash.
+            } catch (IOException ex) {
+                logger.severe("Error reading objectives file: " + ex.getMessage());
+                readCleanly = false;
+            }
+        }
+
+        if (!readCleanly) {
+            File badFile = new File(file.getPath() + ".bad");
+            try {
+                Files.move(file.toPath(), badFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+                logger.warning("Moved unreadable objectives file to " + badFile);
+            } catch (IOException ex) {
+                logger.severe("Error moving unreadable objectives file; it will not be updated: " + ex.getMessage());
+                _file = null;
+                return;
+            }
+        }
+
+        int count = 0;
+        for (LinkedHashMap<Long, ObjectiveRecord> worldRecords : records.values()) {
+            for (ObjectiveRecord record : worldRecords.values()) {
+                addPending(record);
+                ++count;
+            }
+        }
+        logger.info("Loaded " + count + " persistent objective(s).");
+
+        rewrite(Collections.emptyList(), logger);
+    }
+
+    // ------------------------------------------------------------------------
+    /**
+     * Rewrite the journal with the current state of all objectives and close
+     * it.
+     *
+     * @param objectives the objectives that have been restored or spawned.
+     * @param logger     the logger.
+     */
+    public void close(Collection<Objective> objectives, Logger logger) {
+        if (_file != null) {
+            rewrite(objectives, logger);
+            closeJournal();
+            _file = null;
+        }
+        _pending.clear();
+    }
+
+    // ------------------------------------------------------------------------
+    /**
+     * Record the remaining life of all mortal objectives.
+     *
+     * The records are appended to the journal, where they supersede earlier
+     * records of the same objectives. Once the journal holds many superseded
+     * records, it is rewritten instead.
+     *
+     * @param objectives the objectives that have been restored or spawned.
+     * @param logger     the logger.
+     */
+    public void checkpoint(Collection<Objective> objectives, Logger logger) {
+        if (_out == null) {
+            return;
+        }
+
+        if (_appendedRecords > COMPACT_THRESHOLD) {
+            rewrite(objectives, logger);
+            return;
+        }
+
+        try {
+            for (Objective objective : objectives) {
+                if (!objective.isImmortal()) {
+                    writeRecord(_out, toRecord(objective), true);
+                    ++_appendedRecords;
+                }
+            }
+            _out.flush();
+        } catch (IOException ex) {
+            closeJournal();
+        }
+    }
+
+    // ------------------------------------------------------------------------
+    /**
+     * Remove and return the records of persisted objectives in the specified
+     * chunk.
+     *
+     * @param chunk the chunk.
+     * @return the records, which may be empty.
+     */
+    public List<ObjectiveRecord> takePending(Chunk chunk) {
+        HashMap<Long, ArrayList<ObjectiveRecord>> chunks = _pending.get(chunk.getWorld().getUID());
+        if (chunks == null) {
+            return Collections.emptyList();
+        }
+
+        ArrayList<ObjectiveRecord> records = chunks.remove(Util.chunkKey(chunk.getX(), chunk.getZ()));
+        if (chunks.isEmpty()) {
+            _pending.remove(chunk.getWorld().getUID());
+        }
+        return (records != null) ? records : Collections.emptyList();
+    }
+
+    // ------------------------------------------------------------------------
+    /**
+     * Record the addition of an objective.
+     *
+     * @param objective the objective.
+     */
+    public void added(Objective objective) {
+        append(toRecord(objective), true);
+    }
+
+    // ------------------------------------------------------------------------
+    /**
+     * Record the removal of an objective.
+     *
+     * @param objective the objective.
+     */
+    public void removed(Objective objective) {
+        append(toRecord(objective), false);
+    }
+
+    // ------------------------------------------------------------------------
+    /**
+     * Record the removal of an objective that was never restored.
+     *
+     * @param record the record of the objective.
+     */
+    public void discard(ObjectiveRecord record) {
+        append(record, false);
+    }
+
+    // ------------------------------------------------------------------------
+    /**
+     * Return the record of the current state of an objective.
+     *
+     * @param objective the objective.
+     * @return the record.
+     */
+    protected static ObjectiveRecord toRecord(Objective objective) {
+        Location loc = objective.getLocation();
+        return new ObjectiveRecord(loc.getWorld().getUID(),
+                                   Util.blockKey(loc.getBlockX(), loc.getBlockY(), loc.getBlockZ()),
+                                   objective.getObjectiveType().getId(),
+                                   objective.isImmortal() ? -1 : objective.getLifeInTicks());
+    }
+
+    // ------------------------------------------------------------------------
+    /**
+     * Replay journal records, until the end of the stream.
+     *
+     * @param in      the stream, positioned after the header.
+     * @param records map from world UUID to map from packed block coordinates
+     *                to record, updated as records are read.
+     * @throws IOException if an error occurs, including EOFException at the
+     *                     end of the stream.
+     */
+    protected static void readRecords(DataInputStream in, HashMap<UUID, LinkedHashMap<Long, ObjectiveRecord>> records)
+    throws IOException {
+        while (true) {
+            byte op = in.readByte();
+            UUID worldId = new UUID(in.readLong(), in.readLong());
+            long blockKey = in.readLong();
+            if (op == OP_ADD) {
+                String typeId = in.readUTF();
+                int lifeTicks = in.readInt();
+                records.computeIfAbsent(worldId, k -> new LinkedHashMap<>())
+                .put(blockKey, new ObjectiveRecord(worldId, blockKey, typeId, lifeTicks));
+            } else if (op == OP_REMOVE) {
+                LinkedHashMap<Long, ObjectiveRecord> worldRecords = records.get(worldId);
+                if (worldRecords != null) {
+                    worldRecords.remove(blockKey);
+                }
+            } else {
+                throw new IOException("invalid record type " + op);
+            }
+        }
+    }
+
+    // ------------------------------------------------------------------------
+    /**
+     * Add a record to those awaiting the loading of their chunk.
+     *
+     * @param record the record.
+     */
+    protected void addPending(ObjectiveRecord record) {
+        long blockKey = record.getBlockKey();
+        long chunkKey = Util.chunkKey(Util.blockKeyX(blockKey) >> 4, Util.blockKeyZ(blockKey) >> 4);
+        _pending.computeIfAbsent(record.getWorldId(), k -> new HashMap<>())
+        .computeIfAbsent(chunkKey, k -> new ArrayList<>())
+        .add(record);
+    }
+
+    // ------------------------------------------------------------------------
+    /**
+     * Append a record to the journal.
+     *
+     * @param record the record.
+     * @param add    true for an addition; false for a removal.
+     */
+    protected void append(ObjectiveRecord record, boolean add) {
+        if (_out == null) {
+            return;
+        }
+
+        try {
+            writeRecord(_out, record, add);
+            ++_appendedRecords;
+            _out.flush();
+        } catch (IOException ex) {
+            closeJournal();
+        }
+    }
+
+    // ------------------------------------------------------------------------
+    /**
+     * Write a record.
+     *
+     * @param out    the stream.
+     * @param record the record.
+     * @param add    true for an addition; false for a removal.
+     * @throws IOException if an error occurs.
+     */
+    protected static void writeRecord(DataOutputStream out, ObjectiveRecord record, boolean add)
+    throws IOException {
+        out.writeByte(add ? OP_ADD : OP_REMOVE);
+        out.writeLong(record.getWorldId().getMostSignificantBits());
+        out.writeLong(record.getWorldId().getLeastSignificantBits());
+        out.writeLong(record.getBlockKey());
+        if (add) {
+            out.writeUTF(record.getTypeId());
+            out.writeInt(record.getLifeTicks());
+        }
+    }
+
+    // ------------------------------------------------------------------------
+    /**
+     * Replace the journal with additions of the specified objectives and all
+     * pending records, and reopen it for appending.
+     *
+     * @param objectives the objectives that have been restored or spawned.
+     * @param logger     the logger.
+     */
+    protected void rewrite(Collection<Objective> objectives, Logger logger) {
+        closeJournal();
+        File tempFile = new File(_file.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)))) {
+            out.writeInt(MAGIC);
+            out.writeByte(VERSION);
+            for (Objective objective : objectives) {
+                writeRecord(out, toRecord(objective), true);
+            }
+            for (HashMap<Long, ArrayList<ObjectiveRecord>> chunks : _pending.values()) {
+                for (ArrayList<ObjectiveRecord> records : chunks.values()) {
+                    for (ObjectiveRecord record : records) {
+                        writeRecord(out, record, true);
+                    }
+                }
+            }
+        } catch (IOException ex) {
+            logger.severe("Error writing objectives file: " + ex.getMessage());
+            return;
+        }
+
+        try {
+            Files.move(tempFile.toPath(), _file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            _out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(_file, true)));
+            _appendedRecords = 0;
+        } catch (IOException ex) {
+            logger.severe("Error replacing objectives file: " + ex.getMessage());
+        }
+    }
+
+    // ------------------------------------------------------------------------
+    /**
+     * Close the journal output stream, if open.
+     */
+    protected void closeJournal() {
+        if (_out != null) {
+            try {
+                _out.close();
+            } catch (IOException ex) {
+                // Nothing more can be done.
+            }
+            _out = null;
+        }
+    }
+
+    // ------------------------------------------------------------------------
+    /**
+     * Magic number at the start of the file: "BMOB".
+     */
+    protected static final int MAGIC = 0x424D4F42;
+
+    /**
+     * File format version.
+     */
+    protected static final byte VERSION = 1;
+
+    /**
+     * Record type of an added objective.
+     */
+    protected static final byte OP_ADD = 1;
+
+    /**
+     * Record type of a removed objective.
+     */
+    protected static final byte OP_REMOVE = 2;
+
+    /**
+     * The number of records appended since the journal was last rewritten,
+     * above which a checkpoint rewrites it.
+     */
+    protected static final int COMPACT_THRESHOLD = 4096;
+
+    /**
+     * The journal file, or null if not open.
+     */
+    protected File _file;
+
+    /**
+     * Output stream appending to the journal, or null if not open.
+     */
+    protected DataOutputStream _out;
+
+    /**
+     * The number of records appended since the journal was last rewritten.
+     */
+    protected int _appendedRecords;
+
+    /**
+     * Map from world UUID to map from chunk key to records of persisted
+     * objectives in that chunk that have not yet been restored.
+     */
+    protected HashMap<UUID, HashMap<Long, ArrayList<ObjectiveRecord>>> _pending = new HashMap<>();
+
+} // class ObjectiveStore
@@ -0,0 +1,82 @@
+package nu.nerd.beastmaster.objectives;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.HashMap;
+
+import com.sk89q.worldedit.extent.clipboard.Clipboard;
+import com.sk89q.worldedit.extent.clipboard.io.ClipboardFormat;
+import com.sk89q.worldedit.extent.clipboard.io.ClipboardFormats;
+import com.sk89q.worldedit.extent.clipboard.io.ClipboardReader;
+import com.sk89q.worldedit.util.io.Closer;
+
+// ----------------------------------------------------------------------------
+/**
+ * Caches parsed schematic files as WorldEdit Clipboards.
+ *
+ * Each schematic is parsed on first use and reparsed only when the
+ * modification time of its file changes. Cached Clipboards are shared, so
+ * callers must not modify them; pasting through a ClipboardHolder with a
+ * transform leaves the Clipboard unchanged.
+ */
+public class SchematicCache {
+    // ------------------------------------------------------------------------
+    /**
+     * Return the Clipboard loaded from the specified schematic file.
+     *
+     * @param file the schematic file.
+     * @return the Clipboard, or null if the file is not in a recognised
+     *         schematic format.
+     * @throws IOException if the file could not be read.
+     */
+    public Clipboard getClipboard(File file) throws IOException {
+        String key = file.getPath();
+        long modified = file.lastModified();
+        Clipboard clipboard = _clipboards.get(key);
+        if (clipboard != null && _modifiedTimes.get(key) == modified) {
+            return clipboard;
+        }
+
+        _clipboards.remove(key);
+        _modifiedTimes.remove(key);
+        ClipboardFormat format = ClipboardFormats.findByFile(file);
+        if (format == null) {
+            return null;
+        }
+
+        try (Closer closer = Closer.create()) {
+            FileInputStream fileInputStream = closer.register(new FileInputStream(file));
+            BufferedInputStream bufferedInputStream = closer.register(new BufferedInputStream(fileInputStream));
+            ClipboardReader reader = closer.register(format.getReader(bufferedInputStream));
+            clipboard = reader.read();
+        }
+
+        _clipboards.put(key, clipboard);
+        _modifiedTimes.put(key, modified);
+        return clipboard;
+    }
+
+    // ------------------------------------------------------------------------
+    /**
+     * Discard all cached Clipboards.
+     */
+    public void clear() {
+        _clipboards.clear();
+        _modifiedTimes.clear();
+    }
+
+    // ------------------------------------------------------------------------
+    /**
+     * Map from schematic file path to parsed Clipboard.
+     */
+    protected HashMap<String, Clipboard> _clipboards = new HashMap<>();
+
+    /**
+     * Map from schematic file path to the modification time of the file when
+     * it was parsed.
+     */
+    protected HashMap<String, Long> _modifiedTimes = new HashMap<>();
+
+} // class SchematicCache
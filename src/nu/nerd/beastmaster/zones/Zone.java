@@ -1,6 +1,7 @@
 package nu.nerd.beastmaster.zones;
 
 import java.util.ArrayList;
+import java.util.EnumMap;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -17,13 +18,14 @@ import org.bukkit.entity.EntityType;
 
 import nu.nerd.beastmaster.BeastMaster;
 import nu.nerd.beastmaster.DropSet;
+import nu.nerd.beastmaster.ILinkable;
 
 // ----------------------------------------------------------------------------
 /**
  * Defines a hierarchy of 2-D volumes delineated by Zone Specification Language
  * where specific mining drops and mob replacements apply.
  */
-public class Zone {
+public class Zone implements ILinkable {
     // ------------------------------------------------------------------------
     /**
      * Default constructor, used for loading from the configuration.
@@ -97,6 +99,7 @@ public class Zone {
         }
         parent.children().add(this);
         _parent = parent;
+        BeastMaster.ZONES.invalidateMiningMaterials();
     }
 
     // ------------------------------------------------------------------------
@@ -242,6 +245,8 @@ public class Zone {
         } else {
             _miningDropsIds.put(material, dropSetId);
         }
+        BeastMaster.LINKS.markDirty(this);
+        BeastMaster.ZONES.invalidateMiningMaterials();
     }
 
     // ------------------------------------------------------------------------
@@ -277,7 +282,13 @@ public class Zone {
      *         is mined, or null if this Zone does not override the drops.
      */
     public DropSet getMiningDrops(Material material, boolean inherit) {
-        return BeastMaster.LOOTS.getDropSet(getMiningDropsId(material, inherit));
+        DropSet drops = _miningDrops.get(material);
+        if (drops != null || _miningDropsIds.containsKey(material)) {
+            // Null here means the ID is dangling; don't inherit.
+            return drops;
+        }
+        return (_parent != null && inherit && _inheritsBlocks) ? _parent.getMiningDrops(material, inherit)
+                                                               : null;
     }
 
     // ------------------------------------------------------------------------
@@ -332,6 +343,7 @@ public class Zone {
         } else {
             _mobReplacementDropSetIDs.put(entityType, dropSetId);
         }
+        BeastMaster.LINKS.markDirty(this);
     }
 
     // ------------------------------------------------------------------------
@@ -366,7 +378,13 @@ public class Zone {
      *         specified EntityType in this zone.
      */
     public DropSet getMobReplacementDropSet(EntityType entityType, boolean inherit) {
-        return BeastMaster.LOOTS.getDropSet(getMobReplacementDropSetId(entityType, inherit));
+        DropSet drops = _mobReplacementDropSets.get(entityType);
+        if (drops != null || _mobReplacementDropSetIDs.containsKey(entityType)) {
+            // Null here means the ID is dangling; don't inherit.
+            return drops;
+        }
+        return (_parent != null && inherit && _inheritsReplacements) ? _parent.getMobReplacementDropSet(entityType, inherit)
+                                                                     : null;
     }
 
     // ------------------------------------------------------------------------
@@ -542,6 +560,40 @@ public class Zone {
         return true;
     }
 
+    // ------------------------------------------------------------------------
+    /**
+     * Resolve the IDs of mining drops and mob replacement loot tables to
+     * {@link DropSet} instances.
+     *
+     * @see nu.nerd.beastmaster.ILinkable#link(java.util.logging.Logger)
+     */
+    @Override
+    public void link(Logger logger) {
+        _miningDrops.clear();
+        for (Entry<Material, String> entry : _miningDropsIds.entrySet()) {
+            BeastMaster.LINKS.addDependency(this, entry.getValue());
+            DropSet drops = BeastMaster.LOOTS.getDropSet(entry.getValue());
+            if (drops != null) {
+                _miningDrops.put(entry.getKey(), drops);
+            } else {
+                logger.warning("Zone " + getId() + " mining drops for " + entry.getKey() +
+                               " refer to unknown loot table " + entry.getValue() + ".");
+            }
+        }
+
+        _mobReplacementDropSets.clear();
+        for (Entry<EntityType, String> entry : _mobReplacementDropSetIDs.entrySet()) {
+            BeastMaster.LINKS.addDependency(this, entry.getValue());
+            DropSet drops = BeastMaster.LOOTS.getDropSet(entry.getValue());
+            if (drops != null) {
+                _mobReplacementDropSets.put(entry.getKey(), drops);
+            } else {
+                logger.warning("Zone " + getId() + " replacements for " + entry.getKey() +
+                               " refer to unknown loot table " + entry.getValue() + ".");
+            }
+        }
+    }
+
     // ------------------------------------------------------------------------
     /**
      * Save this zone as a child of the specified parent configuration section.
@@ -698,11 +750,23 @@ public class Zone {
      */
     protected HashMap<Material, String> _miningDropsIds = new HashMap<>();
 
+    /**
+     * Map from mined block type to the linked {@link DropSet} corresponding to
+     * the ID in {@link #_miningDropsIds}; dangling IDs have no entry.
+     */
+    protected EnumMap<Material, DropSet> _miningDrops = new EnumMap<>(Material.class);
+
     /**
      * Map from EntityType to ID of DropSet to replace it with on spawn.
      */
     protected HashMap<EntityType, String> _mobReplacementDropSetIDs = new HashMap<>();
 
+    /**
+     * Map from EntityType to the linked {@link DropSet} corresponding to the ID
+     * in {@link #_mobReplacementDropSetIDs}; dangling IDs have no entry.
+     */
+    protected EnumMap<EntityType, DropSet> _mobReplacementDropSets = new EnumMap<>(EntityType.class);
+
     /**
      * True if this Zone inherits mining drops from its parent Zone.
      */
@@ -3,17 +3,22 @@ package nu.nerd.beastmaster.zones;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Comparator;
+import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Set;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
 
 import org.bukkit.Bukkit;
 import org.bukkit.Location;
+import org.bukkit.Material;
 import org.bukkit.World;
 import org.bukkit.configuration.ConfigurationSection;
 import org.bukkit.configuration.file.FileConfiguration;
 
+import nu.nerd.beastmaster.BeastMaster;
+
 // ----------------------------------------------------------------------------
 /**
  * Manages the zone definitions.
@@ -83,6 +88,41 @@ public class ZoneManager {
         return root;
     }
 
+    // ------------------------------------------------------------------------
+    /**
+     * Return the set of block Materials that have mining drops in any Zone of
+     * the specified World.
+     *
+     * This is a cheap pre-check: blocks whose Material is not in the set
+     * cannot produce custom mining drops anywhere in the World. The set is
+     * computed on first use and cached until Zones change.
+     *
+     * @param world the World.
+     * @return the set of Materials; must not be modified.
+     */
+    public Set<Material> getMiningMaterials(World world) {
+        EnumSet<Material> materials = _miningMaterials.get(world);
+        if (materials == null) {
+            materials = EnumSet.noneOf(Material.class);
+            for (Zone zone : _idToZone.values()) {
+                if (zone.getRoot().getId().equalsIgnoreCase(world.getName())) {
+                    materials.addAll(zone.getAllMiningDrops(false).keySet());
+                }
+            }
+            _miningMaterials.put(world, materials);
+        }
+        return materials;
+    }
+
+    // ------------------------------------------------------------------------
+    /**
+     * Discard the cached sets of mining Materials, after Zones or their mining
+     * drops change.
+     */
+    public void invalidateMiningMaterials() {
+        _miningMaterials.clear();
+    }
+
     // ------------------------------------------------------------------------
     /**
      * Add a new zone.
@@ -95,6 +135,8 @@ public class ZoneManager {
         // a Root Zone in the onWorldLoad() event.
         if (getZone(zone.getId()) == null) {
             _idToZone.put(zone.getId().toLowerCase(), zone);
+            BeastMaster.LINKS.markDirty(zone);
+            invalidateMiningMaterials();
         }
     }
 
@@ -106,6 +148,8 @@ public class ZoneManager {
      */
     public void removeZone(Zone removed) {
         _idToZone.remove(removed.getId().toLowerCase());
+        BeastMaster.LINKS.forget(removed);
+        invalidateMiningMaterials();
 
         // Remove reference to removed zone in parent's children list.
         Zone parent = removed.getParent();
@@ -158,6 +202,7 @@ public class ZoneManager {
             Zone zone = getZone(id);
             zone.loadHierarchy(zoneSection, logger);
         }
+        invalidateMiningMaterials();
 
         // Add in default zones for any worlds not mentioned in the config.
         for (World world : Bukkit.getWorlds()) {
@@ -214,4 +259,10 @@ public class ZoneManager {
      */
     protected HashMap<String, Zone> _idToZone = new HashMap<>();
 
+    /**
+     * Map from World to the cached set of Materials with mining drops in any
+     * of its Zones.
+     */
+    protected HashMap<World, EnumSet<Material>> _miningMaterials = new HashMap<>();
+
 } // class ZoneManager
\ No newline at end of file